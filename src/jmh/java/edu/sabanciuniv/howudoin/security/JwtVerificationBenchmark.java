@@ -0,0 +1,71 @@
+package edu.sabanciuniv.howudoin.security;
+
+import edu.sabanciuniv.howudoin.users.UserModel;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request from its bearer token.
+ * legacyDoubleParse reproduces the previous filter path (key rebuilt and token
+ * parsed twice, console output left out); parseOnce is the single
+ * verify-and-extract path with a cache miss; verifyCached is a repeat token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtVerificationBenchmark {
+    private static final String SECRET = "benchmark_secret_key_that_is_at_least_48_bytes_long_for_hs384";
+
+    private JwtWebTokenProvider provider;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        provider = new JwtWebTokenProvider(SECRET, 900_000L, 10_000,
+                new TokenRevocationList(100_000, 0.01), new SimpleMeterRegistry());
+
+        UserModel user = new UserModel();
+        user.setId("6560f1a2b3c4d5e6f7a8b9c0");
+        user.setEmail("benchmark@example.com");
+        token = provider.generateToken(new CustomUserDetails(user));
+        provider.verify(token);
+    }
+
+    @Benchmark
+    public String legacyDoubleParse() {
+        Jwts.parserBuilder().setSigningKey(legacySigningKey()).build().parseClaimsJws(token);
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(legacySigningKey())
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        return claims.getSubject();
+    }
+
+    @Benchmark
+    public VerifiedToken parseOnce() {
+        return provider.parse(token);
+    }
+
+    @Benchmark
+    public VerifiedToken verifyCached() {
+        return provider.verify(token);
+    }
+
+    private static SecretKey legacySigningKey() {
+        return Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+    }
+}
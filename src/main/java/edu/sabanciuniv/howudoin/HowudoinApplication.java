@@ -3,12 +3,13 @@ package edu.sabanciuniv.howudoin;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(exclude = {SecurityAutoConfiguration.class})
+@EnableScheduling
 public class HowudoinApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(HowudoinApplication.class, args);
-        System.out.println("Howudoin Application Started");
     }
 }
\ No newline at end of file
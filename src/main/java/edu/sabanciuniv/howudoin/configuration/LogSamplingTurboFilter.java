@@ -0,0 +1,106 @@
+package edu.sabanciuniv.howudoin.configuration;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-logger sampling and rate caps, configured in logback-spring.xml.
+ * Each rule applies to a logger name prefix (the longest matching prefix wins)
+ * and to events at or below its level; more severe events always pass.
+ * A rule keeps one event in every sampleEvery and at most maxPerSecond events.
+ * Runs before the event is built, so dropped events cost a counter increment.
+ */
+public class LogSamplingTurboFilter extends TurboFilter {
+    private final List<Rule> rules = new ArrayList<>();
+
+    public void addRule(Rule rule) {
+        rules.add(rule);
+    }
+
+    @Override
+    public void start() {
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.logger.length()).reversed());
+        super.start();
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        // isDebugEnabled() style checks carry no message and must not consume samples
+        if (!isStarted() || format == null) {
+            return FilterReply.NEUTRAL;
+        }
+        Rule rule = ruleFor(logger.getName());
+        if (rule == null || level.toInt() > rule.level.toInt()) {
+            return FilterReply.NEUTRAL;
+        }
+        return rule.admit() ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private Rule ruleFor(String loggerName) {
+        for (Rule rule : rules) {
+            if (loggerName.startsWith(rule.logger)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One sampling rule. Setters are called by Joran from the XML configuration.
+     */
+    public static class Rule {
+        private String logger = "";
+        private Level level = Level.INFO;
+        private long sampleEvery = 1;
+        private long maxPerSecond = Long.MAX_VALUE;
+
+        private final AtomicLong seen = new AtomicLong();
+        private final AtomicLong window = new AtomicLong();
+
+        public void setLogger(String logger) {
+            this.logger = logger;
+        }
+
+        public void setLevel(String level) {
+            this.level = Level.toLevel(level, Level.INFO);
+        }
+
+        public void setSampleEvery(long sampleEvery) {
+            this.sampleEvery = Math.max(1, sampleEvery);
+        }
+
+        public void setMaxPerSecond(long maxPerSecond) {
+            this.maxPerSecond = Math.max(0, maxPerSecond);
+        }
+
+        boolean admit() {
+            if (sampleEvery > 1 && seen.getAndIncrement() % sampleEvery != 0) {
+                return false;
+            }
+            if (maxPerSecond == Long.MAX_VALUE) {
+                return true;
+            }
+            // High 20 bits hold the current second (wrapping), low 44 bits the events admitted in it
+            long second = System.currentTimeMillis() / 1000;
+            while (true) {
+                long current = window.get();
+                long count = (current >>> 44) == (second & 0xFFFFF) ? current & 0xFFFFFFFFFFFL : 0;
+                if (count >= maxPerSecond) {
+                    return false;
+                }
+                long next = ((second & 0xFFFFF) << 44) | (count + 1);
+                if (window.compareAndSet(current, next)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package edu.sabanciuniv.howudoin.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Application thread pools. The WebSocket message broker registers several
+ * Executor beans and a TaskScheduler of its own, so Boot's default
+ * applicationTaskExecutor and taskScheduler are not created in this application;
+ * work that needs a pool gets a named one here.
+ */
+@Configuration
+public class TaskExecutionConfiguration
+{
+    public static final String AUTHENTICATION_EXECUTOR = "authenticationExecutor";
+
+    /**
+     * Token signing and refresh token inserts after a password check,
+     * kept off the bounded password hashing pool.
+     */
+    @Bean(name = AUTHENTICATION_EXECUTOR)
+    public ThreadPoolTaskExecutor authenticationExecutor(
+            @Value("${app.authentication-executor.threads:8}") int threads,
+            @Value("${app.authentication-executor.queue-capacity:1000}") int queueCapacity)
+    {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("authentication-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+
+    /**
+     * Runs the scheduled jobs (deletion purge, revocation sync, rate limit eviction).
+     * Scheduling picks the bean up by its name; without it the jobs would share
+     * the STOMP heartbeat scheduler.
+     */
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${app.scheduling.threads:3}") int threads)
+    {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(threads);
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        return scheduler;
+    }
+}
@@ -1,4 +1,81 @@
 package edu.sabanciuniv.howudoin.configuration;
 
-public class WebSocketConfiguration {
+import edu.sabanciuniv.howudoin.security.JwtHandshakeHandler;
+import edu.sabanciuniv.howudoin.security.JwtHandshakeInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * STOMP over WebSocket configuration for real-time message delivery.
+ * Clients connect to /ws with their JWT (Authorization header or access_token
+ * query parameter) and subscribe to /user/queue/messages and
+ * /user/queue/group-messages.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+@RequiredArgsConstructor
+public class WebSocketConfiguration implements WebSocketMessageBrokerConfigurer
+{
+    private static final String USER_DESTINATION_PREFIX = "/user";
+
+    private final JwtHandshakeInterceptor jwtHandshakeInterceptor;
+
+    @Value("${app.cors.allowed-origins:*}")
+    private String allowedOrigins;
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry)
+    {
+        registry.enableSimpleBroker("/queue");
+        registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix(USER_DESTINATION_PREFIX);
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry)
+    {
+        registry.addEndpoint("/ws")
+                .setAllowedOriginPatterns(allowedOrigins.split(","))
+                .addInterceptors(jwtHandshakeInterceptor)
+                .setHandshakeHandler(new JwtHandshakeHandler());
+    }
+
+    /**
+     * Only allow subscriptions to the caller's own user destinations,
+     * so a session cannot listen on another user's resolved queue.
+     */
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration)
+    {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel)
+            {
+                StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+                if (StompCommand.SUBSCRIBE.equals(accessor.getCommand()))
+                {
+                    String destination = accessor.getDestination();
+                    if (accessor.getUser() == null
+                            || destination == null
+                            || !destination.startsWith(USER_DESTINATION_PREFIX + "/"))
+                    {
+                        throw new MessagingException("Subscriptions are limited to /user destinations");
+                    }
+                }
+                return message;
+            }
+        });
+    }
 }
@@ -0,0 +1,84 @@
+package edu.sabanciuniv.howudoin.deletion;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+
+/**
+ * A pending or finished background purge of everything that belonged to a deleted
+ * conversation, group or user. The phase and purged count are saved after every
+ * chunk, so a job picked up by another instance continues where it stopped.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "deletion_jobs")
+@CompoundIndex(name = "status_created_at", def = "{ 'status': 1, 'created_at': 1 }")
+public class DeletionJobModel
+{
+    public enum Type {
+        CONVERSATION,
+        GROUP,
+        USER
+    }
+
+    public enum Status {
+        PENDING,
+        DONE
+    }
+
+    @Id
+    private String id;
+
+    @Field("type")
+    private Type type;
+
+    // Conversation id, group id or user id
+    @Field("target_id")
+    private String targetId;
+
+    // Conversations only: messages created up to this time are purged, later ones are kept
+    @Field("cutoff")
+    private LocalDateTime cutoff;
+
+    @Field("status")
+    private Status status;
+
+    // Index of the current step in the type's purge plan
+    @Field("phase")
+    private int phase;
+
+    @Field("purged")
+    private long purged;
+
+    // Instance holding the job may work on it until then
+    @Field("lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Field("created_at")
+    private LocalDateTime createdAt;
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+
+    // Finished jobs are kept a week for inspection
+    @Indexed(name = "completed_at_ttl", expireAfterSeconds = 604800)
+    @Field("completed_at")
+    private LocalDateTime completedAt;
+
+    public static DeletionJobModel of(Type type, String targetId, LocalDateTime cutoff)
+    {
+        DeletionJobModel job = new DeletionJobModel();
+        job.setType(type);
+        job.setTargetId(targetId);
+        job.setCutoff(cutoff);
+        job.setStatus(Status.PENDING);
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(job.getCreatedAt());
+        return job;
+    }
+}
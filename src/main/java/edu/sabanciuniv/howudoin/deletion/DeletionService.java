@@ -0,0 +1,291 @@
+package edu.sabanciuniv.howudoin.deletion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Background deletion engine.
+ * Callers hide the entity at once (drop the root document or record a tombstone)
+ * and enqueue a job; the scheduler then purges the dependent documents a chunk at
+ * a time, bounded to chunk-size x chunks-per-run documents per interval per instance.
+ * Jobs are claimed with a lease, so several instances can share the backlog.
+ * Pending jobs are re-read every interval, which is also how in-memory indexes
+ * learn about groups and users deleted on another instance.
+ */
+@Slf4j
+@Service
+public class DeletionService {
+    /**
+     * One step of a purge plan: the documents of a collection selected for a job,
+     * either removed or, for embedded references, pulled from their array.
+     */
+    private enum Phase {
+        CONVERSATION_MESSAGES(DeletionJobModel.Type.CONVERSATION, "messages",
+                job -> Criteria.where("conversation_id").is(job.getTargetId()).and("created_at").lte(job.getCutoff())),
+        GROUP_MEMBERSHIPS(DeletionJobModel.Type.GROUP, "group_memberships",
+                job -> Criteria.where("group_id").is(job.getTargetId())),
+        GROUP_MESSAGES(DeletionJobModel.Type.GROUP, "group_messages",
+                job -> Criteria.where("group_id").is(job.getTargetId())),
+        USER_FRIEND_CONNECTIONS(DeletionJobModel.Type.USER, "users",
+                job -> Criteria.where("friend_connections.friendId").is(job.getTargetId())),
+        USER_GROUP_MEMBERSHIPS(DeletionJobModel.Type.USER, "group_memberships",
+                job -> Criteria.where("user_id").is(job.getTargetId())),
+        USER_SENT_FRIEND_REQUESTS(DeletionJobModel.Type.USER, "friendRequests",
+                job -> Criteria.where("sender_id").is(job.getTargetId())),
+        USER_RECEIVED_FRIEND_REQUESTS(DeletionJobModel.Type.USER, "friendRequests",
+                job -> Criteria.where("receiver_id").is(job.getTargetId()));
+
+        private final DeletionJobModel.Type type;
+        private final String collection;
+        private final Function<DeletionJobModel, Criteria> selector;
+
+        Phase(DeletionJobModel.Type type, String collection, Function<DeletionJobModel, Criteria> selector) {
+            this.type = type;
+            this.collection = collection;
+            this.selector = selector;
+        }
+
+        static List<Phase> planFor(DeletionJobModel.Type type) {
+            return Arrays.stream(values()).filter(phase -> phase.type == type).toList();
+        }
+    }
+
+    private final MongoTemplate mongoTemplate;
+    private final int chunkSize;
+    private final int chunksPerRun;
+    private final Duration lease;
+
+    // Deleted conversations still being purged, with their cutoff
+    private final Map<String, LocalDateTime> conversationTombstones = new ConcurrentHashMap<>();
+    // Other deleted targets still being purged, with the time this instance first saw them
+    private final Map<DeletionJobModel.Type, Map<String, LocalDateTime>> pendingByType = new EnumMap<>(DeletionJobModel.Type.class);
+    private final Map<DeletionJobModel.Type, List<Consumer<String>>> listeners = new EnumMap<>(DeletionJobModel.Type.class);
+    private final AtomicLong backlog = new AtomicLong();
+    private final Map<DeletionJobModel.Type, Counter> purged = new EnumMap<>(DeletionJobModel.Type.class);
+
+    public DeletionService(
+            MongoTemplate mongoTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.deletion.chunk-size:500}") int chunkSize,
+            @Value("${app.deletion.chunks-per-run:4}") int chunksPerRun,
+            @Value("${app.deletion.lease-seconds:60}") long leaseSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunksPerRun = Math.max(1, chunksPerRun);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+
+        for (DeletionJobModel.Type type : DeletionJobModel.Type.values()) {
+            pendingByType.put(type, new ConcurrentHashMap<>());
+            listeners.put(type, new CopyOnWriteArrayList<>());
+            purged.put(type, Counter.builder("deletion.documents.purged")
+                    .description("Documents removed or updated by background deletion")
+                    .tag("type", type.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("deletion.jobs.backlog", backlog, AtomicLong::get)
+                .description("Deletion jobs waiting to be finished")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void loadTombstones() {
+        refreshTombstones();
+    }
+
+    /**
+     * Records a deletion to be purged in the background.
+     */
+    public void enqueue(DeletionJobModel.Type type, String targetId) {
+        LocalDateTime cutoff = type == DeletionJobModel.Type.CONVERSATION ? LocalDateTime.now() : null;
+        mongoTemplate.insert(DeletionJobModel.of(type, targetId, cutoff));
+        if (cutoff != null) {
+            conversationTombstones.merge(targetId, cutoff, (current, next) -> next.isAfter(current) ? next : current);
+        }
+        // The caller updates this instance itself; listeners only hear about deletions made elsewhere
+        pendingByType.get(type).putIfAbsent(targetId, LocalDateTime.now());
+        backlog.incrementAndGet();
+    }
+
+    /**
+     * Whether a deletion of the target is being purged, as of the last refresh or a local enqueue.
+     */
+    public boolean isPending(DeletionJobModel.Type type, String targetId) {
+        return pendingByType.get(type).containsKey(targetId);
+    }
+
+    /**
+     * Calls the listener, on the scheduler thread, once for every deletion of the given type
+     * recorded by another instance, within one interval of it being enqueued.
+     */
+    public void onDeletion(DeletionJobModel.Type type, Consumer<String> listener) {
+        listeners.get(type).add(listener);
+    }
+
+    /**
+     * Messages of the conversation created at or before the returned time are deleted
+     * and must not be shown; null when no deletion of it is in progress.
+     */
+    public LocalDateTime conversationCutoff(String conversationId) {
+        return conversationTombstones.get(conversationId);
+    }
+
+    /**
+     * Targets of the given type whose purge has not finished, for startup loaders
+     * that must not resurrect them.
+     */
+    public Set<String> pendingTargets(DeletionJobModel.Type type) {
+        Query query = new Query(Criteria.where("status").is(DeletionJobModel.Status.PENDING).and("type").is(type));
+        query.fields().include("targetId");
+        return mongoTemplate.find(query, DeletionJobModel.class).stream()
+                .map(DeletionJobModel::getTargetId)
+                .collect(Collectors.toSet());
+    }
+
+    @Scheduled(fixedDelayString = "${app.deletion.interval-ms:1000}")
+    public void purge() {
+        DeletionJobModel job = claim();
+        if (job != null) {
+            run(job);
+        }
+        refreshTombstones();
+    }
+
+    private DeletionJobModel claim() {
+        LocalDateTime now = LocalDateTime.now();
+        Query available = new Query(Criteria.where("status").is(DeletionJobModel.Status.PENDING)
+                .orOperator(Criteria.where("leaseUntil").is(null), Criteria.where("leaseUntil").lt(now)))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        return mongoTemplate.findAndModify(
+                available,
+                new Update().set("leaseUntil", now.plus(lease)),
+                FindAndModifyOptions.options().returnNew(true),
+                DeletionJobModel.class);
+    }
+
+    private void run(DeletionJobModel job) {
+        List<Phase> plan = Phase.planFor(job.getType());
+        int phase = job.getPhase();
+
+        for (int chunk = 0; chunk < chunksPerRun && phase < plan.size(); chunk++) {
+            int count = purgeChunk(job, plan.get(phase));
+            // A short chunk means the step has nothing left
+            if (count < chunkSize) {
+                phase++;
+            }
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("id").is(job.getId())),
+                    new Update()
+                            .set("phase", phase)
+                            .inc("purged", count)
+                            .set("updatedAt", LocalDateTime.now())
+                            .set("leaseUntil", LocalDateTime.now().plus(lease)),
+                    DeletionJobModel.class);
+            purged.get(job.getType()).increment(count);
+        }
+
+        if (phase >= plan.size()) {
+            LocalDateTime now = LocalDateTime.now();
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("id").is(job.getId())),
+                    new Update()
+                            .set("status", DeletionJobModel.Status.DONE)
+                            .set("completedAt", now)
+                            .set("updatedAt", now)
+                            .unset("leaseUntil"),
+                    DeletionJobModel.class);
+            log.info("Deletion of {} {} finished", job.getType().name().toLowerCase(), job.getTargetId());
+        }
+    }
+
+    // Selects one chunk of ids, then removes or updates exactly those documents
+    private int purgeChunk(DeletionJobModel job, Phase phase) {
+        Query select = new Query(phase.selector.apply(job)).limit(chunkSize);
+        select.fields().include("_id");
+        List<Object> ids = mongoTemplate.find(select, Document.class, phase.collection).stream()
+                .map(document -> document.get("_id"))
+                .toList();
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        Query chunk = new Query(Criteria.where("_id").in(ids));
+        if (phase == Phase.USER_FRIEND_CONNECTIONS) {
+            mongoTemplate.updateMulti(chunk,
+                    new Update().pull("friend_connections", new Document("friendId", job.getTargetId())),
+                    phase.collection);
+        } else {
+            mongoTemplate.remove(chunk, phase.collection);
+        }
+        return ids.size();
+    }
+
+    private void announce(Consumer<String> listener, DeletionJobModel.Type type, String targetId) {
+        try {
+            listener.accept(targetId);
+        } catch (RuntimeException exception) {
+            log.warn("Deletion listener failed for {} {}", type.name().toLowerCase(), targetId, exception);
+        }
+    }
+
+    // Picks up deletions made by other instances and drops finished ones
+    private void refreshTombstones() {
+        LocalDateTime refreshStart = LocalDateTime.now();
+        Query pending = new Query(Criteria.where("status").is(DeletionJobModel.Status.PENDING));
+        pending.fields().include("type").include("targetId").include("cutoff");
+        List<DeletionJobModel> jobs = mongoTemplate.find(pending, DeletionJobModel.class);
+
+        Map<String, LocalDateTime> cutoffs = new HashMap<>();
+        Map<DeletionJobModel.Type, Set<String>> targets = new EnumMap<>(DeletionJobModel.Type.class);
+        for (DeletionJobModel job : jobs) {
+            if (job.getType() == DeletionJobModel.Type.CONVERSATION && job.getCutoff() != null) {
+                cutoffs.merge(job.getTargetId(), job.getCutoff(), (current, next) -> next.isAfter(current) ? next : current);
+            }
+            targets.computeIfAbsent(job.getType(), type -> new HashSet<>()).add(job.getTargetId());
+        }
+        for (DeletionJobModel.Type type : DeletionJobModel.Type.values()) {
+            Map<String, LocalDateTime> seen = pendingByType.get(type);
+            Set<String> current = targets.getOrDefault(type, Set.of());
+            for (String targetId : current) {
+                if (seen.putIfAbsent(targetId, refreshStart) == null) {
+                    listeners.get(type).forEach(listener -> announce(listener, type, targetId));
+                }
+            }
+            seen.entrySet().removeIf(entry ->
+                    !current.contains(entry.getKey()) && entry.getValue().isBefore(refreshStart));
+        }
+        conversationTombstones.putAll(cutoffs);
+        // Entries added by enqueue while the query ran are kept until the next refresh
+        conversationTombstones.entrySet().removeIf(entry ->
+                !cutoffs.containsKey(entry.getKey()) && entry.getValue().isBefore(refreshStart));
+        backlog.set(jobs.size());
+    }
+}
@@ -6,6 +6,7 @@ import edu.sabanciuniv.howudoin.users.UserService;
 import edu.sabanciuniv.howudoin.security.CustomUserDetails;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -16,6 +17,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/friends")
 @RequiredArgsConstructor
@@ -37,9 +39,6 @@ public class FriendController
             CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
             String senderId = userDetails.getUserId();
 
-            userService.getUserById(senderId);
-            userService.getUserById(receiverId);
-
             FriendRequestModel request = friendService.sendFriendRequest(senderId, receiverId);
             return new ResponseEntity<>(request, HttpStatus.CREATED);
         }
@@ -59,8 +58,7 @@ public class FriendController
     {
         try
         {
-            FriendRequestModel request = friendService.acceptFriendRequest(requestId, userId);
-            userService.addFriendship(request.getSenderId(), request.getReceiverId());
+            friendService.acceptFriendRequest(requestId, userId);
             return ResponseEntity.ok(new ApiResponse(true, "Friend request accepted"));
         } catch (RuntimeException exception)
         {
@@ -92,7 +90,7 @@ public class FriendController
     public ResponseEntity<List<FriendRequestModel>> getPendingRequests(
             @RequestHeader("User-Id") String userId)
     {
-        System.out.println("Received User-Id: " + userId);
+        log.debug("Pending requests requested by {}", userId);
 
         try
         {
@@ -4,6 +4,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
@@ -16,9 +17,12 @@ public class FriendRequestModel {
     @Id
     private String id;
 
+    // Both sides are indexed for lookups and for purging a deleted user's requests
+    @Indexed
     @Field("sender_id")
     private String senderId;
 
+    @Indexed
     @Field("receiver_id")
     private String receiverId;
 
@@ -1,20 +1,30 @@
 package edu.sabanciuniv.howudoin.friends;
 
-import edu.sabanciuniv.howudoin.users.UserRepository;
+import edu.sabanciuniv.howudoin.users.UserModel;
+import edu.sabanciuniv.howudoin.users.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Friend requests. The requests only track asking and answering; whether two users
+ * are friends is always read from the users' friend connections (UserService).
+ */
 @Service
 @RequiredArgsConstructor
 public class FriendService
 {
     private final FriendRepository friendRepository;
-    private final UserRepository userRepository;
+    private final UserService userService;
+    private final MongoTemplate mongoTemplate;
 
     /**
      * Sends a friend request from one user to another
@@ -22,7 +32,7 @@ public class FriendService
     public FriendRequestModel sendFriendRequest(String senderId, String receiverId)
     {
         // Check if users exist
-        if (!userRepository.existsById(senderId) || !userRepository.existsById(receiverId))
+        if (!userService.userExists(senderId) || !userService.userExists(receiverId))
         {
             throw new RuntimeException("One or both users not found");
         }
@@ -33,6 +43,11 @@ public class FriendService
             throw new RuntimeException("Cannot send friend request to yourself");
         }
 
+        if (userService.areFriends(senderId, receiverId))
+        {
+            throw new RuntimeException("Users are already friends");
+        }
+
         // Check if request already exists
         Optional<FriendRequestModel> existingRequest = friendRepository
                 .findBySenderIdAndReceiverId(senderId, receiverId);
@@ -44,10 +59,10 @@ public class FriendService
             {
                 throw new RuntimeException("Friend request pending");
             }
-            if (request.getStatus() == FriendRequestModel.RequestStatus.ACCEPTED)
-            {
-                throw new RuntimeException("Users are already friends");
-            }
+            // Answered earlier and the users are not friends now: ask again with the same request
+            request.setStatus(FriendRequestModel.RequestStatus.PENDING);
+            request.prePersist();
+            return friendRepository.save(request);
         }
 
         // Create new friend request
@@ -65,7 +80,7 @@ public class FriendService
      */
     public List<FriendRequestModel> getPendingRequests(String userId)
     {
-        if (!userRepository.existsById(userId))
+        if (!userService.userExists(userId))
         {
             throw new RuntimeException("User not found");
         }
@@ -73,44 +88,68 @@ public class FriendService
     }
 
     /**
-     * Accepts a friend request
+     * Accepts a friend request and creates the friendship.
+     * The request moves from PENDING to ACCEPTED in one conditional update, so two
+     * concurrent accepts cannot both succeed; the request is only read again to
+     * explain a failure.
      */
     public FriendRequestModel acceptFriendRequest(String requestId, String userId)
     {
-        FriendRequestModel request = friendRepository.findById(requestId)
-                .orElseThrow(() -> new RuntimeException("Friend request not found"));
-
-        // Verify receiver is accepting
-        if (!request.getReceiverId().equals(userId))
+        Query pending = new Query(Criteria.where("id").is(requestId)
+                .and("receiverId").is(userId)
+                .and("status").is(FriendRequestModel.RequestStatus.PENDING));
+        FriendRequestModel request = mongoTemplate.findAndModify(
+                pending,
+                new Update()
+                        .set("status", FriendRequestModel.RequestStatus.ACCEPTED)
+                        .set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                FriendRequestModel.class);
+
+        if (request == null)
         {
-            throw new RuntimeException("Not authorized to accept this request");
+            FriendRequestModel existing = friendRepository.findById(requestId)
+                    .orElseThrow(() -> new RuntimeException("Friend request not found"));
+            if (!existing.getReceiverId().equals(userId))
+            {
+                throw new RuntimeException("Not authorized to accept this request");
+            }
+            throw new RuntimeException("Request is not pending");
         }
 
-        // Verify request is pending
-        if (request.getStatus() != FriendRequestModel.RequestStatus.PENDING)
+        try
         {
-            throw new RuntimeException("Request is not pending");
+            userService.addFriendship(request.getSenderId(), request.getReceiverId());
         }
-        // Accept request
-        request.setStatus(FriendRequestModel.RequestStatus.ACCEPTED);
-        request.setUpdatedAt(LocalDateTime.now());
-
-        // Save and return updated request
-        return friendRepository.save(request);
+        catch (RuntimeException exception)
+        {
+            // No friendship was written (e.g. the sender was deleted); leave the request unanswered
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("id").is(requestId)),
+                    new Update().set("status", FriendRequestModel.RequestStatus.PENDING),
+                    FriendRequestModel.class);
+            throw exception;
+        }
+        return request;
     }
 
     /**
      * Gets friendship status between two users
      */
     public String getFriendshipStatus(String user1Id, String user2Id) {
+        if (userService.getFriendStatus(user1Id, user2Id) == UserModel.FriendStatus.ACCEPTED) {
+            return FriendRequestModel.RequestStatus.ACCEPTED.toString();
+        }
+
+        // Not friends: report an open or rejected request; an accepted one belongs to an ended friendship
         Optional<FriendRequestModel> request = friendRepository.findBySenderIdAndReceiverId(user1Id, user2Id);
-        if (request.isPresent()) {
+        if (request.isPresent() && request.get().getStatus() != FriendRequestModel.RequestStatus.ACCEPTED) {
             return request.get().getStatus().toString();
         }
 
         // Check reverse direction
         request = friendRepository.findBySenderIdAndReceiverId(user2Id, user1Id);
-        if (request.isPresent()) {
+        if (request.isPresent() && request.get().getStatus() != FriendRequestModel.RequestStatus.ACCEPTED) {
             return request.get().getStatus().toString();
         }
 
@@ -122,7 +161,6 @@ public class FriendService
      */
     public boolean areFriends(String user1Id, String user2Id)
     {
-        String status = getFriendshipStatus(user1Id, user2Id);
-        return status.equals("ACCEPTED");
+        return userService.areFriends(user1Id, user2Id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package edu.sabanciuniv.howudoin.groups.DTO;
+
+import edu.sabanciuniv.howudoin.users.UserModel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Public profile of a group member, without credentials or friend lists.
+ */
+@Data
+@AllArgsConstructor
+public class GroupMemberDto
+{
+    private String id;
+    private String firstName;
+    private String lastName;
+
+    public static GroupMemberDto of(UserModel user)
+    {
+        return new GroupMemberDto(user.getId(), user.getFirstName(), user.getLastName());
+    }
+}
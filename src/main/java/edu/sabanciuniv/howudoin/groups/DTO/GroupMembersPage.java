@@ -0,0 +1,19 @@
+package edu.sabanciuniv.howudoin.groups.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class GroupMembersPage
+{
+    // Ordered by user id
+    private List<GroupMemberDto> members;
+
+    // Pass as "after" to load the next page, null when there is none
+    private String next;
+
+    private int totalMembers;
+}
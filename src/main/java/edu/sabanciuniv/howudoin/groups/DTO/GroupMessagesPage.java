@@ -0,0 +1,24 @@
+package edu.sabanciuniv.howudoin.groups.DTO;
+
+import edu.sabanciuniv.howudoin.groups.GroupMessagesModel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class GroupMessagesPage
+{
+    // Newest message first
+    private List<GroupMessagesModel> messages;
+
+    // Pass as "before" to load older messages, null when the page is empty
+    private String before;
+
+    // Pass as "after" to load newer messages, null when the page is empty
+    private String after;
+
+    // Whether more messages exist in the requested direction
+    private boolean hasMore;
+}
@@ -0,0 +1,15 @@
+package edu.sabanciuniv.howudoin.groups.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class GroupReadPosition
+{
+    private String groupId;
+
+    private long lastReadSeq;
+
+    private long unread;
+}
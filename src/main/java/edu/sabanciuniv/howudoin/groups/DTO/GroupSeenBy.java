@@ -0,0 +1,16 @@
+package edu.sabanciuniv.howudoin.groups.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class GroupSeenBy
+{
+    private long seq;
+
+    // Members whose read position has reached seq, the sender included
+    private int seenBy;
+
+    private int totalMembers;
+}
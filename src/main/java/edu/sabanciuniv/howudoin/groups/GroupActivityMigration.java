@@ -0,0 +1,106 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import edu.sabanciuniv.howudoin.messages.ConversationSummaryModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Adds messages sent before message_count was maintained to each group's counter
+ * and last-message fields. Only messages without a seq that predate the run are
+ * counted, since live sends number their own messages and increment the counter
+ * themselves; the backfill is added with the same guarded pipeline update, so a
+ * concurrent send is never overwritten. Groups are converted one at a time and
+ * flagged when done, so an interrupted run resumes where it stopped. A marker in
+ * the migrations collection records completion.
+ */
+@Slf4j
+@Order(6)
+@Component
+@RequiredArgsConstructor
+public class GroupActivityMigration implements ApplicationRunner {
+    private static final String MIGRATIONS = "migrations";
+    private static final String MARKER_ID = "group_activity";
+    private static final String BACKFILLED = "activity_backfilled";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (mongoTemplate.exists(new Query(Criteria.where("_id").is(MARKER_ID)), MIGRATIONS)) {
+            return;
+        }
+
+        Date cutoff = new Date();
+        Query pending = new Query(Criteria.where(BACKFILLED).exists(false));
+        pending.fields().include("_id");
+
+        long groups = 0;
+        try (Stream<Document> stream = mongoTemplate.stream(pending, Document.class, "groups")) {
+            for (Document group : (Iterable<Document>) stream::iterator) {
+                backfill(group.get("_id"), cutoff);
+                groups++;
+            }
+        }
+
+        mongoTemplate.save(new Document("_id", MARKER_ID).append("completed_at", new Date()), MIGRATIONS);
+        log.info("Backfilled message counters for {} groups", groups);
+    }
+
+    private void backfill(Object groupId, Date cutoff) {
+        Aggregation legacyMessages = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("group_id").is(groupId.toString())
+                        .and("seq").exists(false)
+                        .and("created_at").lt(cutoff)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "created_at", "_id")),
+                Aggregation.group("group_id")
+                        .count().as("count")
+                        .first("_id").as("lastMessageId")
+                        .first("content").as("content")
+                        .first("sender_id").as("senderId")
+                        .first("created_at").as("createdAt")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+        Document activity = mongoTemplate.aggregate(legacyMessages, "group_messages", Document.class)
+                .getUniqueMappedResult();
+
+        Document fields = new Document(BACKFILLED, true);
+        if (activity == null) {
+            // Groups without older messages were last active when created, unless a live send says otherwise
+            fields.append("message_count", new Document("$ifNull", List.of("$message_count", 0L)))
+                    .append("last_activity_at", new Document("$ifNull", List.of("$last_activity_at", "$created_at")));
+        } else {
+            Document newer = new Document("$lt", List.of("$last_activity_at", activity.getDate("createdAt")));
+            long count = ((Number) activity.get("count")).longValue();
+            fields.append("message_count", new Document("$add", List.of(new Document("$ifNull", List.of("$message_count", 0L)), count)))
+                    .append("last_message_id", ifNewer(newer, "last_message_id", activity.get("lastMessageId").toString()))
+                    .append("last_message_preview", ifNewer(newer, "last_message_preview", ConversationSummaryModel.preview(activity.getString("content"))))
+                    .append("last_sender_id", ifNewer(newer, "last_sender_id", activity.getString("senderId")))
+                    .append("last_activity_at", ifNewer(newer, "last_activity_at", activity.getDate("createdAt")));
+        }
+
+        // The flag in the filter makes the increment apply once, even if two instances migrate together
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(groupId).and(BACKFILLED).exists(false)),
+                AggregationUpdate.from(List.of(context -> new Document("$set", fields))),
+                "groups");
+    }
+
+    private static Document ifNewer(Document newer, String field, Object value) {
+        return new Document("$cond", List.of(newer, new Document("$literal", value), "$" + field));
+    }
+}
@@ -2,17 +2,19 @@ package edu.sabanciuniv.howudoin.groups;
 
 import edu.sabanciuniv.howudoin.groups.DTO.AddMemberRequest;
 import edu.sabanciuniv.howudoin.groups.DTO.CreateGroupRequest;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupMembersPage;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupMessagesPage;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupReadPosition;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupSeenBy;
 import edu.sabanciuniv.howudoin.groups.DTO.SendMessageRequest;
 import edu.sabanciuniv.howudoin.security.DTO.ApiResponse;
-import edu.sabanciuniv.howudoin.users.UserModel;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller for managing group-related operations including:
@@ -92,19 +94,23 @@ public class GroupController {
     }
 
     /**
-     * Retrieves the message history for the specified group
+     * Retrieves the message history for the specified group.
+     * Pages are addressed with the opaque before/after cursors of the previous response.
      */
     @GetMapping("/{groupId}/messages")
     public ResponseEntity<?> getGroupMessages(
             @PathVariable String groupId,
             @RequestHeader("User-Id") String userId,
-            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "20") int size) {
         try {
-            Page<GroupMessagesModel> messages = groupService.getGroupMessages(
+            GroupMessagesPage messages = groupService.getGroupMessages(
                     groupId,
                     userId,
-                    PageRequest.of(page, size)
+                    before,
+                    after,
+                    size
             );
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
@@ -114,14 +120,51 @@ public class GroupController {
     }
 
     /**
-     * Retrieves the list of members for the specified group
+     * Marks the group read up to the given message seq, or up to the latest message
+     */
+    @PostMapping("/{groupId}/read")
+    public ResponseEntity<?> markGroupRead(
+            @PathVariable String groupId,
+            @RequestHeader("User-Id") String userId,
+            @RequestParam(required = false) Long seq) {
+        try {
+            GroupReadPosition position = groupService.markGroupRead(groupId, userId, seq);
+            return ResponseEntity.ok(position);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Reports how many members have seen the message with the given seq
+     */
+    @GetMapping("/{groupId}/messages/{seq}/seen")
+    public ResponseEntity<?> getSeenBy(
+            @PathVariable String groupId,
+            @PathVariable long seq,
+            @RequestHeader("User-Id") String userId) {
+        try {
+            GroupSeenBy seenBy = groupService.getSeenBy(groupId, userId, seq);
+            return ResponseEntity.ok(seenBy);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Retrieves the members of the specified group, a page at a time.
+     * Pass the "next" value of the previous response as "after" to continue.
      */
     @GetMapping("/{groupId}/members")
     public ResponseEntity<?> getGroupMembers(
             @PathVariable String groupId,
-            @RequestHeader("User-Id") String userId) {
+            @RequestHeader("User-Id") String userId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "50") int size) {
         try {
-            List<UserModel> members = groupService.getGroupMembers(groupId, userId);
+            GroupMembersPage members = groupService.getGroupMembers(groupId, userId, after, size);
             return ResponseEntity.ok(members);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -129,6 +172,20 @@ public class GroupController {
         }
     }
 
+    /**
+     * Unread message counts of all the current user's groups, keyed by group id
+     */
+    @GetMapping("/unread")
+    public ResponseEntity<?> getUnreadCounts(@RequestHeader("User-Id") String userId) {
+        try {
+            Map<String, Long> unread = groupService.getUnreadCounts(userId);
+            return ResponseEntity.ok(unread);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(new ApiResponse(false, e.getMessage()));
+        }
+    }
+
     /**
      * Retrieves details of a specific group
      */
@@ -0,0 +1,264 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import edu.sabanciuniv.howudoin.deletion.DeletionJobModel;
+import edu.sabanciuniv.howudoin.deletion.DeletionService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory group membership in both directions: group to members and user to groups.
+ * Built from group_memberships (plus any groups.member_ids not migrated yet) at
+ * startup and kept current by GroupService, so member checks on the message
+ * path do not read Mongo.
+ *
+ * Other instances change membership too. A group or member missing here is looked
+ * up once in Mongo and added; joins and leaves are appended to a short-lived
+ * change log that every instance replays each interval; deleted groups and users
+ * are dropped when DeletionService sees their jobs.
+ */
+@Slf4j
+@Component
+public class GroupMembershipIndex {
+    private static final String CHANGES = "group_membership_changes";
+    private static final Duration CHANGE_RETENTION = Duration.ofHours(1);
+    // Changes are replayed from a little before the last sync, so clock skew between instances does not lose any
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final GroupMembershipRepository membershipRepository;
+    private final DeletionService deletionService;
+    private volatile Date lastSync = new Date();
+
+    private final Map<String, Set<String>> membersByGroup = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> groupsByUser = new ConcurrentHashMap<>();
+
+    public GroupMembershipIndex(
+            MongoTemplate mongoTemplate,
+            GroupMembershipRepository membershipRepository,
+            DeletionService deletionService,
+            MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.membershipRepository = membershipRepository;
+        this.deletionService = deletionService;
+        Gauge.builder("group.membership.groups", membersByGroup, Map::size)
+                .description("Groups held in the in-memory membership index")
+                .register(meterRegistry);
+        deletionService.onDeletion(DeletionJobModel.Type.GROUP, this::removeGroup);
+        deletionService.onDeletion(DeletionJobModel.Type.USER, this::removeUser);
+    }
+
+    @PostConstruct
+    void load() {
+        mongoTemplate.indexOps(CHANGES).ensureIndex(
+                new Index().on("changed_at", Sort.Direction.ASC).expire(CHANGE_RETENTION));
+
+        Query query = new Query();
+        query.fields().include("group_id").include("user_id");
+
+        // Rows of deleted groups and users stay until their background purge reaches them
+        Set<String> deletedGroups = deletionService.pendingTargets(DeletionJobModel.Type.GROUP);
+        Set<String> deletedUsers = deletionService.pendingTargets(DeletionJobModel.Type.USER);
+
+        long memberships = 0;
+        try (Stream<Document> rows = mongoTemplate.stream(query, Document.class, "group_memberships")) {
+            for (Document row : (Iterable<Document>) rows::iterator) {
+                if (deletedGroups.contains(row.getString("group_id")) || deletedUsers.contains(row.getString("user_id"))) {
+                    continue;
+                }
+                addMember(row.getString("group_id"), row.getString("user_id"));
+                memberships++;
+            }
+        }
+
+        // Groups that GroupMembershipMigration has not converted yet
+        Query legacyGroups = new Query(Criteria.where("member_ids").exists(true));
+        legacyGroups.fields().include("_id").include("member_ids");
+        try (Stream<Document> groups = mongoTemplate.stream(legacyGroups, Document.class, "groups")) {
+            for (Document group : (Iterable<Document>) groups::iterator) {
+                List<String> memberIds = group.getList("member_ids", String.class, List.of());
+                addGroup(group.get("_id").toString(), memberIds);
+                memberships += memberIds.size();
+            }
+        }
+        log.info("Group membership loaded: {} groups, {} memberships", membersByGroup.size(), memberships);
+    }
+
+    /**
+     * Applies joins and leaves recorded by any instance since the last sync.
+     * Replays are harmless: a leave that is stale by now is undone by the next membership miss.
+     */
+    @Scheduled(fixedDelayString = "${app.group-membership.sync-interval-ms:1000}")
+    public void syncChanges() {
+        Date syncStart = new Date();
+        Query changes = new Query(Criteria.where("changed_at").gte(Date.from(lastSync.toInstant().minus(SYNC_OVERLAP))))
+                .with(Sort.by(Sort.Direction.ASC, "changed_at"));
+        for (Document change : mongoTemplate.find(changes, Document.class, CHANGES)) {
+            String groupId = change.getString("group_id");
+            String userId = change.getString("user_id");
+            if (change.getBoolean("joined", false)) {
+                // Unknown groups are loaded whole on their first miss instead
+                if (membersByGroup.containsKey(groupId)) {
+                    addMember(groupId, userId);
+                }
+            } else {
+                removeMember(groupId, userId);
+            }
+        }
+        lastSync = syncStart;
+    }
+
+    /**
+     * Adds a member and records the join for the other instances.
+     */
+    public void memberJoined(String groupId, String userId) {
+        addMember(groupId, userId);
+        recordChange(groupId, userId, true);
+    }
+
+    /**
+     * Removes a member and records the leave for the other instances.
+     */
+    public void memberLeft(String groupId, String userId) {
+        removeMember(groupId, userId);
+        recordChange(groupId, userId, false);
+    }
+
+    public void addGroup(String groupId, Collection<String> memberIds) {
+        membersByGroup.computeIfAbsent(groupId, id -> ConcurrentHashMap.newKeySet());
+        memberIds.forEach(userId -> addMember(groupId, userId));
+    }
+
+    public void addMember(String groupId, String userId) {
+        membersByGroup.computeIfAbsent(groupId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+        // compute, not computeIfAbsent: removals may drop an emptied set concurrently
+        groupsByUser.compute(userId, (id, groups) -> {
+            Set<String> userGroups = groups == null ? ConcurrentHashMap.newKeySet() : groups;
+            userGroups.add(groupId);
+            return userGroups;
+        });
+    }
+
+    public void removeMember(String groupId, String userId) {
+        Set<String> members = membersByGroup.get(groupId);
+        if (members != null) {
+            members.remove(userId);
+        }
+        groupsByUser.computeIfPresent(userId, (id, groups) -> {
+            groups.remove(groupId);
+            return groups.isEmpty() ? null : groups;
+        });
+    }
+
+    public void removeGroup(String groupId) {
+        Set<String> members = membersByGroup.remove(groupId);
+        if (members == null) {
+            return;
+        }
+        for (String userId : members) {
+            groupsByUser.computeIfPresent(userId, (id, groups) -> {
+                groups.remove(groupId);
+                return groups.isEmpty() ? null : groups;
+            });
+        }
+    }
+
+    /**
+     * Drops a deleted user from all their groups.
+     */
+    public void removeUser(String userId) {
+        for (String groupId : groupIds(userId)) {
+            removeMember(groupId, userId);
+        }
+    }
+
+    /**
+     * Whether the group exists. A group created on another instance is loaded on its first miss.
+     */
+    public boolean containsGroup(String groupId) {
+        return membersByGroup.containsKey(groupId) || loadGroup(groupId);
+    }
+
+    /**
+     * Whether the user belongs to the group. A member added on another instance is confirmed
+     * against group_memberships on the first miss and added.
+     */
+    public boolean isMember(String groupId, String userId) {
+        if (!containsGroup(groupId)) {
+            return false;
+        }
+        Set<String> members = membersByGroup.get(groupId);
+        if (members != null && members.contains(userId)) {
+            return true;
+        }
+        // Rows of deleted users stay until their purge
+        if (deletionService.isPending(DeletionJobModel.Type.USER, userId)
+                || !membershipRepository.existsByGroupIdAndUserId(groupId, userId)) {
+            return false;
+        }
+        addMember(groupId, userId);
+        return true;
+    }
+
+    /**
+     * Live read-only view of a group's members.
+     */
+    public Set<String> members(String groupId) {
+        Set<String> members = membersByGroup.get(groupId);
+        return members == null ? Set.of() : Collections.unmodifiableSet(members);
+    }
+
+    public int memberCount(String groupId) {
+        Set<String> members = membersByGroup.get(groupId);
+        return members == null ? 0 : members.size();
+    }
+
+    private boolean loadGroup(String groupId) {
+        if (deletionService.isPending(DeletionJobModel.Type.GROUP, groupId)
+                || !mongoTemplate.exists(new Query(Criteria.where("id").is(groupId)), GroupModel.class)) {
+            return false;
+        }
+        Query query = new Query(Criteria.where("groupId").is(groupId));
+        query.fields().include("userId");
+        List<String> memberIds = mongoTemplate.find(query, GroupMembershipModel.class).stream()
+                .map(GroupMembershipModel::getUserId)
+                .filter(userId -> !deletionService.isPending(DeletionJobModel.Type.USER, userId))
+                .toList();
+        addGroup(groupId, memberIds);
+        return true;
+    }
+
+    private void recordChange(String groupId, String userId, boolean joined) {
+        mongoTemplate.insert(new Document("group_id", groupId)
+                .append("user_id", userId)
+                .append("joined", joined)
+                .append("changed_at", new Date()), CHANGES);
+    }
+
+    /**
+     * Ids of the groups a user belongs to, as a snapshot.
+     */
+    public List<String> groupIds(String userId) {
+        Set<String> groups = groupsByUser.get(userId);
+        return groups == null ? List.of() : List.copyOf(groups);
+    }
+}
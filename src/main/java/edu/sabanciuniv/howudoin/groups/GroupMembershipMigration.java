@@ -0,0 +1,91 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Moves the embedded groups.member_ids arrays into group_memberships rows,
+ * adds them to member_count and drops the array. Each group is converted on its own,
+ * so an interrupted run resumes with the groups that still have member_ids.
+ * The count is applied with $inc, since members added through GroupService while
+ * the migration runs already incremented it themselves.
+ */
+@Slf4j
+@Order(5)
+@Component
+@RequiredArgsConstructor
+public class GroupMembershipMigration implements ApplicationRunner {
+    // Marks rows this migration inserted and has not added to member_count yet
+    private static final String UNCOUNTED = "migration_uncounted";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query legacyGroups = new Query(Criteria.where("member_ids").exists(true));
+        legacyGroups.fields().include("_id").include("creator_id").include("created_at").include("member_ids");
+
+        long groups = 0;
+        try (Stream<Document> stream = mongoTemplate.stream(legacyGroups, Document.class, "groups")) {
+            for (Document group : (Iterable<Document>) stream::iterator) {
+                migrate(group);
+                groups++;
+            }
+        }
+        if (groups > 0) {
+            log.info("Moved members of {} groups to group_memberships", groups);
+        }
+    }
+
+    private void migrate(Document group) {
+        String groupId = group.get("_id").toString();
+        String creatorId = group.getString("creator_id");
+        Date createdAt = group.getDate("created_at");
+        LocalDateTime joinedAt = createdAt == null
+                ? LocalDateTime.now()
+                : LocalDateTime.ofInstant(createdAt.toInstant(), ZoneId.systemDefault());
+        List<String> memberIds = group.getList("member_ids", String.class, List.of());
+
+        if (!memberIds.isEmpty()) {
+            // Upserts keep the step idempotent if a previous run stopped half way
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, GroupMembershipModel.class);
+            for (String userId : memberIds) {
+                GroupMembershipModel.Role role = userId.equals(creatorId)
+                        ? GroupMembershipModel.Role.CREATOR
+                        : GroupMembershipModel.Role.MEMBER;
+                bulk.upsert(
+                        new Query(Criteria.where("groupId").is(groupId).and("userId").is(userId)),
+                        new Update()
+                                .setOnInsert("role", role)
+                                .setOnInsert("joinedAt", joinedAt)
+                                .setOnInsert(UNCOUNTED, true));
+            }
+            bulk.execute();
+        }
+
+        // Rows inserted by this or an interrupted earlier run; rows added through GroupService are already counted
+        Query uncounted = new Query(Criteria.where("group_id").is(groupId).and(UNCOUNTED).is(true));
+        long inserted = mongoTemplate.count(uncounted, "group_memberships");
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(group.get("_id")).and("member_ids").exists(true)),
+                new Update().inc("member_count", inserted).unset("member_ids"),
+                "groups");
+        mongoTemplate.updateMulti(uncounted, new Update().unset(UNCOUNTED), "group_memberships");
+    }
+}
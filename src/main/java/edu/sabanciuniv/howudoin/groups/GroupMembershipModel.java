@@ -0,0 +1,56 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+
+/**
+ * One member of one group.
+ * Kept outside the group document so adding or removing a member writes a single
+ * small row, whatever the size of the group.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "group_memberships")
+@CompoundIndexes({
+        @CompoundIndex(name = "group_user", def = "{ 'group_id': 1, 'user_id': 1 }", unique = true),
+        @CompoundIndex(name = "user_group", def = "{ 'user_id': 1, 'group_id': 1 }")
+})
+public class GroupMembershipModel
+{
+    public enum Role {
+        CREATOR,
+        MEMBER
+    }
+
+    @Id
+    private String id;
+
+    @Field("group_id")
+    private String groupId;
+
+    @Field("user_id")
+    private String userId;
+
+    @Field("role")
+    private Role role;
+
+    @Field("joined_at")
+    private LocalDateTime joinedAt;
+
+    // Highest message seq this member has read; unread = groups.message_count - last_read_seq
+    @Field("last_read_seq")
+    private long lastReadSeq;
+
+    public static GroupMembershipModel of(String groupId, String userId, Role role)
+    {
+        return new GroupMembershipModel(null, groupId, userId, role, LocalDateTime.now(), 0);
+    }
+}
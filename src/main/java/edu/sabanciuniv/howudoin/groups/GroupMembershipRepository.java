@@ -0,0 +1,24 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface GroupMembershipRepository extends MongoRepository<GroupMembershipModel, String>
+{
+    // Member pages walk the (group_id, user_id) index in user id order
+
+    Slice<GroupMembershipModel> findByGroupId(String groupId, Pageable pageable);
+
+    Slice<GroupMembershipModel> findByGroupIdAndUserIdGreaterThan(String groupId, String userId, Pageable pageable);
+
+    List<GroupMembershipModel> findByUserId(String userId);
+
+    boolean existsByGroupIdAndUserId(String groupId, String userId);
+
+    long deleteByGroupIdAndUserId(String groupId, String userId);
+}
@@ -4,6 +4,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
@@ -12,6 +14,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "group_messages")
+@CompoundIndexes({
+        @CompoundIndex(name = "group_created_at_id", def = "{ 'group_id': 1, 'created_at': -1, '_id': -1 }"),
+        @CompoundIndex(name = "group_seq", def = "{ 'group_id': 1, 'seq': 1 }")
+})
 public class GroupMessagesModel
 {
     @Id
@@ -26,6 +32,10 @@ public class GroupMessagesModel
     @Field("content")
     private String content;
 
+    // Position in the group, taken from groups.message_count; absent on messages sent before it existed
+    @Field("seq")
+    private Long seq;
+
     @Field("created_at")
     private LocalDateTime createdAt;
 
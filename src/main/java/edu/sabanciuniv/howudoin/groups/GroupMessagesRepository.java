@@ -1,14 +1,27 @@
 package edu.sabanciuniv.howudoin.groups;
 
-import org.springframework.data.domain.Page;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+
 @Repository
 public interface GroupMessagesRepository extends MongoRepository<GroupMessagesModel, String>
 {
-    Page<GroupMessagesModel> findByGroupIdOrderByCreatedAtDesc(String groupId, Pageable pageable);
+    // Keyset pages over the (group_id, created_at, _id) index; Slice skips the count query
+
+    Slice<GroupMessagesModel> findByGroupId(String groupId, Pageable pageable);
+
+    @Query("{ 'group_id': ?0, $or: [ { 'created_at': { $lt: ?1 } }, { 'created_at': ?1, '_id': { $lt: ?2 } } ] }")
+    Slice<GroupMessagesModel> findOlderThan(String groupId, LocalDateTime createdAt, ObjectId id, Pageable pageable);
+
+    @Query("{ 'group_id': ?0, $or: [ { 'created_at': { $gt: ?1 } }, { 'created_at': ?1, '_id': { $gt: ?2 } } ] }")
+    Slice<GroupMessagesModel> findNewerThan(String groupId, LocalDateTime createdAt, ObjectId id, Pageable pageable);
+
     long countByGroupId(String groupId);
     void deleteByGroupId(String groupId);
-}
\ No newline at end of file
+}
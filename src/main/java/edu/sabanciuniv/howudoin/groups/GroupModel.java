@@ -4,11 +4,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
-import java.util.HashSet;
-import java.util.Set;
 
 @Data
 @NoArgsConstructor
@@ -22,11 +21,30 @@ public class GroupModel
     @Field("name")
     private String name;
 
+    @Indexed
     @Field("creator_id")
     private String creatorId;
 
-    @Field("member_ids")
-    private Set<String> memberIds = new HashSet<>();
+    // Members live in group_memberships; this count is kept with $inc
+    @Field("member_count")
+    private long memberCount;
+
+    // Denormalized from group_messages, updated together on every send.
+    // message_count doubles as the sequence number of the latest message.
+    @Field("message_count")
+    private long messageCount;
+
+    @Field("last_message_id")
+    private String lastMessageId;
+
+    @Field("last_message_preview")
+    private String lastMessagePreview;
+
+    @Field("last_sender_id")
+    private String lastSenderId;
+
+    @Field("last_activity_at")
+    private LocalDateTime lastActivityAt;
 
     @Field("created_at")
     private LocalDateTime createdAt;
@@ -34,32 +52,16 @@ public class GroupModel
     @Field("updated_at")
     private LocalDateTime updatedAt;
 
-    public void addMember(String userId)
-    {
-        if (memberIds == null) {
-            memberIds = new HashSet<>();
-        }
-        memberIds.add(userId);
-    }
-
-    public void removeMember(String userId)
-    {
-        if (memberIds != null) {
-            memberIds.remove(userId);
-        }
-    }
-
-    public boolean isMember(String userId)
-    {
-        return memberIds != null && memberIds.contains(userId);
-    }
-
     public void prePersist()
     {
         if (createdAt == null)
         {
             createdAt = LocalDateTime.now();
         }
+        if (lastActivityAt == null)
+        {
+            lastActivityAt = createdAt;
+        }
         updatedAt = LocalDateTime.now();
     }
 }
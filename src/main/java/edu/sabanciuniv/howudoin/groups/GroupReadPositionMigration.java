@@ -0,0 +1,51 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+/**
+ * Starts memberships that predate read positions at their group's current
+ * message count, so existing history does not show up as unread. Runs after
+ * GroupActivityMigration has filled message_count.
+ */
+@Slf4j
+@Order(7)
+@Component
+@RequiredArgsConstructor
+public class GroupReadPositionMigration implements ApplicationRunner {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query pending = new Query(Criteria.where("last_read_seq").exists(false));
+        if (!mongoTemplate.exists(pending, "group_memberships")) {
+            return;
+        }
+
+        Query groups = new Query();
+        groups.fields().include("_id").include("message_count");
+        long memberships = 0;
+        try (Stream<Document> stream = mongoTemplate.stream(groups, Document.class, "groups")) {
+            for (Document group : (Iterable<Document>) stream::iterator) {
+                Number messageCount = (Number) group.get("message_count");
+                memberships += mongoTemplate.updateMulti(
+                        new Query(Criteria.where("group_id").is(group.get("_id").toString())
+                                .and("last_read_seq").exists(false)),
+                        new Update().set("last_read_seq", messageCount == null ? 0L : messageCount.longValue()),
+                        "group_memberships").getModifiedCount();
+            }
+        }
+        log.info("Initialized read positions of {} group memberships", memberships);
+    }
+}
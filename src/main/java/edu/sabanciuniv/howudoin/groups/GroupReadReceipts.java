@@ -0,0 +1,110 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupSeenBy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * "Seen by N of M" for group messages, derived from the members' read watermarks.
+ * Each cached group gives its members a slot index and keeps their last_read_seq
+ * in an array; a message's readers are counted as the slots whose watermark has
+ * reached its seq. Nothing is written per recipient on send. Reads on this
+ * instance advance the cached watermarks; reads elsewhere show up once the entry expires.
+ */
+@Component
+public class GroupReadReceipts {
+    private final MongoTemplate mongoTemplate;
+    private final GroupMembershipIndex membershipIndex;
+    private final Cache<String, ReadState> states;
+
+    private record ReadState(Map<String, Integer> slots, AtomicLongArray watermarks) {
+    }
+
+    public GroupReadReceipts(
+            MongoTemplate mongoTemplate,
+            GroupMembershipIndex membershipIndex,
+            MeterRegistry meterRegistry,
+            @Value("${app.group-read-receipts.max-groups:10000}") long maxGroups,
+            @Value("${app.group-read-receipts.ttl-seconds:30}") long ttlSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.membershipIndex = membershipIndex;
+        this.states = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(maxGroups)
+                        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                        .recordStats()
+                        .<String, ReadState>build(),
+                "group.read.receipts");
+    }
+
+    public GroupSeenBy seenBy(String groupId, long seq) {
+        ReadState state = states.get(groupId, this::load);
+        return new GroupSeenBy(seq, readers(state, seq), state.slots().size());
+    }
+
+    /**
+     * Moves a cached watermark forward; never backwards.
+     */
+    public void advance(String groupId, String userId, long seq) {
+        ReadState state = states.getIfPresent(groupId);
+        if (state == null) {
+            return;
+        }
+        Integer slot = state.slots().get(userId);
+        if (slot == null) {
+            // Joined after the entry was built
+            states.invalidate(groupId);
+            return;
+        }
+        state.watermarks().accumulateAndGet(slot, seq, Math::max);
+    }
+
+    /**
+     * Drops a group's entry after its membership changed.
+     */
+    public void invalidate(String groupId) {
+        states.invalidate(groupId);
+    }
+
+    // Members whose watermark has reached seq
+    private static int readers(ReadState state, long seq) {
+        AtomicLongArray watermarks = state.watermarks();
+        int readers = 0;
+        for (int slot = 0; slot < watermarks.length(); slot++) {
+            if (watermarks.get(slot) >= seq) {
+                readers++;
+            }
+        }
+        return readers;
+    }
+
+    private ReadState load(String groupId) {
+        Query query = new Query(Criteria.where("groupId").is(groupId));
+        query.fields().include("userId").include("lastReadSeq");
+        // Rows of deleted users remain until their purge; the index already dropped them
+        List<GroupMembershipModel> memberships = mongoTemplate.find(query, GroupMembershipModel.class).stream()
+                .filter(membership -> membershipIndex.isMember(groupId, membership.getUserId()))
+                .toList();
+
+        Map<String, Integer> slots = new HashMap<>(memberships.size() * 2);
+        AtomicLongArray watermarks = new AtomicLongArray(memberships.size());
+        for (int slot = 0; slot < memberships.size(); slot++) {
+            slots.put(memberships.get(slot).getUserId(), slot);
+            watermarks.set(slot, memberships.get(slot).getLastReadSeq());
+        }
+        return new ReadState(Map.copyOf(slots), watermarks);
+    }
+}
@@ -1,15 +1,15 @@
 package edu.sabanciuniv.howudoin.groups;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface GroupRepository extends MongoRepository<GroupModel, String>
 {
-    List<GroupModel> findByMemberIdsContaining(String userId);
+    List<GroupModel> findByIdInOrderByLastActivityAtDesc(Collection<String> ids);
 
-    @Query("{ 'member_ids': ?0 }")
-    List<GroupModel> findGroupsByMemberId(String memberId);
+    List<GroupModel> findByCreatorId(String creatorId);
 }
\ No newline at end of file
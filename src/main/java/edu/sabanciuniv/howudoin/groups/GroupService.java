@@ -1,46 +1,94 @@
 package edu.sabanciuniv.howudoin.groups;
 
+import edu.sabanciuniv.howudoin.deletion.DeletionJobModel;
+import edu.sabanciuniv.howudoin.deletion.DeletionService;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupMemberDto;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupMembersPage;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupMessagesPage;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupReadPosition;
+import edu.sabanciuniv.howudoin.groups.DTO.GroupSeenBy;
+import edu.sabanciuniv.howudoin.messages.ConversationSummaryModel;
+import edu.sabanciuniv.howudoin.messages.MessagePushService;
+import edu.sabanciuniv.howudoin.users.UserDeletedEvent;
 import edu.sabanciuniv.howudoin.users.UserModel;
 import edu.sabanciuniv.howudoin.users.UserService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class GroupService {
+    private static final int MAX_MESSAGE_PAGE_SIZE = 100;
+    private static final int MAX_MEMBER_PAGE_SIZE = 200;
+
     private final GroupRepository groupRepository;
     private final GroupMessagesRepository groupMessageRepository;
     private final UserService userService;
+    private final MessagePushService messagePushService;
+    private final GroupMembershipIndex membershipIndex;
+    private final GroupMembershipRepository membershipRepository;
+    private final MongoTemplate mongoTemplate;
+    private final GroupReadReceipts readReceipts;
+    private final DeletionService deletionService;
 
     /**
      * Creates a new group with the given name and members
      */
     @Transactional
     public GroupModel createGroup(String name, String creatorId, Set<String> initialMemberIds) {
-        // Verify creator exists
-        userService.getUserById(creatorId);
-
-        // Verify all members exist
+        // Verify creator and all members exist
         for (String memberId : initialMemberIds) {
-            userService.getUserById(memberId);
+            requireUser(memberId);
         }
+        requireUser(creatorId);
+
+        Set<String> memberIds = new HashSet<>(initialMemberIds);
+        memberIds.add(creatorId); // Ensure creator is a member
 
         GroupModel group = new GroupModel();
         group.setName(name);
         group.setCreatorId(creatorId);
-        group.setMemberIds(initialMemberIds);
-        group.addMember(creatorId); // Ensure creator is a member
+        group.setMemberCount(memberIds.size());
         group.prePersist();
 
-        return groupRepository.save(group);
+        GroupModel saved = groupRepository.save(group);
+
+        List<GroupMembershipModel> memberships = new ArrayList<>(memberIds.size());
+        for (String memberId : memberIds) {
+            memberships.add(GroupMembershipModel.of(saved.getId(), memberId,
+                    memberId.equals(creatorId) ? GroupMembershipModel.Role.CREATOR : GroupMembershipModel.Role.MEMBER));
+        }
+        membershipRepository.insert(memberships);
+
+        membershipIndex.addGroup(saved.getId(), memberIds);
+        return saved;
     }
 
     /**
@@ -48,30 +96,31 @@ public class GroupService {
      */
     @Transactional
     public GroupModel addMemberToGroup(String groupId, String userId) {
-        GroupModel group = getGroupById(groupId);
-
-        // Verify user exists
-        userService.getUserById(userId);
+        if (!membershipIndex.containsGroup(groupId)) {
+            throw new IllegalArgumentException("Group not found with ID: " + groupId);
+        }
+        requireUser(userId);
 
-        if (group.isMember(userId)) {
+        // The unique (group_id, user_id) index makes the insert the membership check
+        try {
+            membershipRepository.insert(GroupMembershipModel.of(groupId, userId, GroupMembershipModel.Role.MEMBER));
+        } catch (DuplicateKeyException exception) {
             throw new IllegalStateException("User is already a member of this group");
         }
-
-        group.addMember(userId);
-        return groupRepository.save(group);
+        membershipIndex.memberJoined(groupId, userId);
+        readReceipts.invalidate(groupId);
+        GroupModel group = adjustMemberCount(groupId, 1);
+        // History from before joining does not count as unread
+        advanceReadPosition(groupId, userId, group.getMessageCount());
+        return group;
     }
 
     /**
      * Gets a group and verifies the requesting user is a member
      */
     public GroupModel getGroupWithMemberCheck(String groupId, String userId) {
-        GroupModel group = getGroupById(groupId);
-
-        if (!group.isMember(userId)) {
-            throw new IllegalStateException("User is not a member of this group");
-        }
-
-        return group;
+        requireMember(groupId, userId, "User is not a member of this group");
+        return getGroupById(groupId);
     }
 
     /**
@@ -79,58 +128,225 @@ public class GroupService {
      */
     @Transactional
     public GroupMessagesModel sendGroupMessage(String groupId, String senderId, String content) {
-        GroupModel group = getGroupById(groupId);
-
-        if (!group.isMember(senderId)) {
-            throw new IllegalStateException("Only group members can send messages");
-        }
+        requireMember(groupId, senderId, "Only group members can send messages");
 
         GroupMessagesModel message = new GroupMessagesModel();
+        message.setId(new ObjectId().toHexString());
         message.setGroupId(groupId);
         message.setSenderId(senderId);
         message.setContent(content);
         message.prePersist();
 
-        return groupMessageRepository.save(message);
+        // The incremented counter is the message's seq, so the message is never stored without one
+        Query group = new Query(Criteria.where("id").is(groupId));
+        group.fields().include("messageCount");
+        GroupModel counter = mongoTemplate.findAndModify(
+                group,
+                new Update().inc("messageCount", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                GroupModel.class);
+        if (counter == null) {
+            throw new IllegalArgumentException("Group not found with ID: " + groupId);
+        }
+        message.setSeq(counter.getMessageCount());
+
+        GroupMessagesModel saved;
+        try {
+            saved = groupMessageRepository.insert(message);
+        } catch (RuntimeException exception) {
+            releaseSeq(groupId, message.getSeq());
+            throw exception;
+        }
+        mongoTemplate.updateFirst(new Query(Criteria.where("id").is(groupId)), lastMessageUpdate(saved), GroupModel.class);
+
+        // The sender has read their own message; one row, whatever the group size
+        advanceReadPosition(groupId, senderId, saved.getSeq());
+        messagePushService.pushToUsers(membershipIndex.members(groupId), senderId, MessagePushService.GROUP_MESSAGES_QUEUE, saved);
+        return saved;
     }
 
     /**
-     * Retrieves the message history for the specified group
+     * Gives back the seq of a message that could not be stored. The counter only moves back while
+     * no later send has taken a seq; otherwise the seq stays an unused gap, which costs readers one
+     * phantom unread message until they next mark the group read.
      */
-    public Page<GroupMessagesModel> getGroupMessages(String groupId, String userId, Pageable pageable) {
-        GroupModel group = getGroupById(groupId);
+    private void releaseSeq(String groupId, long seq) {
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("id").is(groupId).and("messageCount").is(seq)),
+                new Update().inc("messageCount", -1),
+                GroupModel.class);
+    }
+
+    /**
+     * Pipeline update of a group's last-message fields for a stored message. They only change
+     * when the message is newer than the group's current one, so a slower concurrent send
+     * cannot take over the preview.
+     */
+    private static AggregationUpdate lastMessageUpdate(GroupMessagesModel message) {
+        Date messageAt = Date.from(message.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant());
+        Document newer = new Document("$lt", List.of("$last_activity_at", messageAt));
+
+        Document fields = new Document()
+                .append("last_message_id", ifNewer(newer, "last_message_id", message.getId()))
+                .append("last_message_preview", ifNewer(newer, "last_message_preview", ConversationSummaryModel.preview(message.getContent())))
+                .append("last_sender_id", ifNewer(newer, "last_sender_id", message.getSenderId()))
+                .append("last_activity_at", ifNewer(newer, "last_activity_at", messageAt));
+        return AggregationUpdate.from(List.of(context -> new Document("$set", fields)));
+    }
+
+    // $literal keeps message text starting with '$' from being read as a field path
+    private static Document ifNewer(Document newer, String field, Object value) {
+        return new Document("$cond", List.of(newer, new Document("$literal", value), "$" + field));
+    }
+
+    /**
+     * Marks the group read up to seq, or up to the latest message when seq is null.
+     * Read positions only move forward.
+     */
+    public GroupReadPosition markGroupRead(String groupId, String userId, Long seq) {
+        requireMember(groupId, userId, "User is not a member of this group");
+
+        long messageCount = messageCount(groupId);
+        long target = seq == null ? messageCount : Math.min(Math.max(seq, 0), messageCount);
+        long lastReadSeq = advanceReadPosition(groupId, userId, target);
+        return new GroupReadPosition(groupId, lastReadSeq, Math.max(messageCount - lastReadSeq, 0));
+    }
+
+    /**
+     * Unread message count of every group the user belongs to, keyed by group id.
+     * Two indexed reads: the user's memberships and the counters of those groups.
+     */
+    public Map<String, Long> getUnreadCounts(String userId) {
+        requireUser(userId);
 
-        if (!group.isMember(userId)) {
-            throw new IllegalStateException("Only group members can view messages");
+        Map<String, Long> lastReadSeqs = new HashMap<>();
+        for (GroupMembershipModel membership : membershipRepository.findByUserId(userId)) {
+            lastReadSeqs.put(membership.getGroupId(), membership.getLastReadSeq());
+        }
+        if (lastReadSeqs.isEmpty()) {
+            return Map.of();
         }
 
-        return groupMessageRepository.findByGroupIdOrderByCreatedAtDesc(groupId, pageable);
+        Query groups = new Query(Criteria.where("id").in(lastReadSeqs.keySet()));
+        groups.fields().include("messageCount");
+        Map<String, Long> unread = new HashMap<>(lastReadSeqs.size() * 2);
+        for (GroupModel group : mongoTemplate.find(groups, GroupModel.class)) {
+            unread.put(group.getId(), Math.max(group.getMessageCount() - lastReadSeqs.get(group.getId()), 0));
+        }
+        return unread;
     }
 
     /**
-     * Retrieves the list of members for the specified group
+     * How many members have read the message with the given seq
      */
-    public List<UserModel> getGroupMembers(String groupId, String requestingUserId) {
-        GroupModel group = getGroupById(groupId);
+    public GroupSeenBy getSeenBy(String groupId, String userId, long seq) {
+        requireMember(groupId, userId, "Only group members can view read receipts");
+        return readReceipts.seenBy(groupId, seq);
+    }
 
-        if (!group.isMember(requestingUserId)) {
-            throw new IllegalStateException("Only group members can view member list");
+    private long advanceReadPosition(String groupId, String userId, long seq) {
+        Query membership = new Query(Criteria.where("groupId").is(groupId).and("userId").is(userId));
+        membership.fields().include("lastReadSeq");
+        GroupMembershipModel updated = mongoTemplate.findAndModify(
+                membership,
+                new Update().max("lastReadSeq", seq),
+                FindAndModifyOptions.options().returnNew(true),
+                GroupMembershipModel.class);
+        if (updated == null) {
+            // Left the group concurrently; nothing to record
+            return seq;
         }
+        readReceipts.advance(groupId, userId, updated.getLastReadSeq());
+        return updated.getLastReadSeq();
+    }
 
-        List<UserModel> members = new ArrayList<>();
-        for (String memberId : group.getMemberIds()) {
-            members.add(userService.getUserById(memberId));
+    /**
+     * Retrieves one page of the group's message history using keyset pagination.
+     * At most one of before/after may be given; with neither, the newest messages are returned.
+     */
+    public GroupMessagesPage getGroupMessages(String groupId, String userId, String before, String after, int size) {
+        requireMember(groupId, userId, "Only group members can view messages");
+        if (before != null && after != null) {
+            throw new IllegalArgumentException("Use either before or after, not both");
+        }
+
+        int pageSize = Math.min(Math.max(size, 1), MAX_MESSAGE_PAGE_SIZE);
+        Slice<GroupMessagesModel> slice;
+        List<GroupMessagesModel> messages;
+
+        if (after != null) {
+            MessageCursor cursor = MessageCursor.decode(after);
+            slice = groupMessageRepository.findNewerThan(groupId, cursor.createdAt(), cursor.id(),
+                    PageRequest.of(0, pageSize, Sort.by(Sort.Direction.ASC, "createdAt", "id")));
+            messages = new ArrayList<>(slice.getContent());
+            Collections.reverse(messages);
+        } else {
+            Pageable newestFirst = PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "createdAt", "id"));
+            if (before != null) {
+                MessageCursor cursor = MessageCursor.decode(before);
+                slice = groupMessageRepository.findOlderThan(groupId, cursor.createdAt(), cursor.id(), newestFirst);
+            } else {
+                slice = groupMessageRepository.findByGroupId(groupId, newestFirst);
+            }
+            messages = slice.getContent();
+        }
+
+        if (messages.isEmpty()) {
+            return new GroupMessagesPage(messages, null, null, false);
         }
-        return members;
+        return new GroupMessagesPage(
+                messages,
+                MessageCursor.of(messages.get(messages.size() - 1)).encode(),
+                MessageCursor.of(messages.get(0)).encode(),
+                slice.hasNext());
     }
 
     /**
-     * Gets all groups for a user
+     * Retrieves one page of the group's members, ordered by user id.
+     * Profiles of the whole page are loaded with a single query.
+     */
+    public GroupMembersPage getGroupMembers(String groupId, String requestingUserId, String after, int size) {
+        requireMember(groupId, requestingUserId, "Only group members can view member list");
+
+        int pageSize = Math.min(Math.max(size, 1), MAX_MEMBER_PAGE_SIZE);
+        Pageable byUserId = PageRequest.of(0, pageSize, Sort.by(Sort.Direction.ASC, "userId"));
+        Slice<GroupMembershipModel> slice = after == null
+                ? membershipRepository.findByGroupId(groupId, byUserId)
+                : membershipRepository.findByGroupIdAndUserIdGreaterThan(groupId, after, byUserId);
+        List<String> pageIds = slice.getContent().stream().map(GroupMembershipModel::getUserId).toList();
+
+        List<GroupMemberDto> members = userService.getProfiles(pageIds).stream()
+                .sorted(Comparator.comparing(UserModel::getId))
+                .map(GroupMemberDto::of)
+                .toList();
+        String next = slice.hasNext() ? pageIds.get(pageIds.size() - 1) : null;
+        return new GroupMembersPage(members, next, membershipIndex.memberCount(groupId));
+    }
+
+    /**
+     * Gets all groups for a user, most recently active first
      */
     public List<GroupModel> getUserGroups(String userId) {
-        // Verify user exists
-        userService.getUserById(userId);
-        return groupRepository.findByMemberIdsContaining(userId);
+        requireUser(userId);
+        return groupRepository.findByIdInOrderByLastActivityAtDesc(membershipIndex.groupIds(userId));
+    }
+
+    /**
+     * Checks membership against the in-memory index, which only reads Mongo on a miss
+     */
+    private void requireMember(String groupId, String userId, String message) {
+        if (!membershipIndex.containsGroup(groupId)) {
+            throw new IllegalArgumentException("Group not found with ID: " + groupId);
+        }
+        if (!membershipIndex.isMember(groupId, userId)) {
+            throw new IllegalStateException(message);
+        }
+    }
+
+    private void requireUser(String userId) {
+        if (!userService.userExists(userId)) {
+            throw new IllegalArgumentException("User not found with ID: " + userId);
+        }
     }
 
     /**
@@ -146,36 +362,71 @@ public class GroupService {
      */
     @Transactional
     public GroupModel removeMemberFromGroup(String groupId, String userId) {
-        GroupModel group = getGroupById(groupId);
+        requireMember(groupId, userId, "User is not a member of this group");
+
+        // Don't allow removing the last member: the counter only drops while it is above one,
+        // so concurrent removals cannot both pass
+        GroupModel group = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(groupId).and("memberCount").gt(1)),
+                new Update().inc("memberCount", -1).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                GroupModel.class);
+        if (group == null) {
+            getGroupById(groupId);
+            throw new IllegalStateException("Cannot remove the last member of the group");
+        }
 
-        if (!group.isMember(userId)) {
+        if (membershipRepository.deleteByGroupIdAndUserId(groupId, userId) == 0) {
+            adjustMemberCount(groupId, 1);
             throw new IllegalStateException("User is not a member of this group");
         }
+        membershipIndex.memberLeft(groupId, userId);
+        readReceipts.invalidate(groupId);
+        return group;
+    }
 
-        // Don't allow removing the last member
-        if (group.getMemberIds().size() <= 1) {
-            throw new IllegalStateException("Cannot remove the last member of the group");
+    /**
+     * Applies a membership change to the group's counter and returns the updated group
+     */
+    private GroupModel adjustMemberCount(String groupId, long delta) {
+        GroupModel group = mongoTemplate.findAndModify(
+                new Query(Criteria.where("id").is(groupId)),
+                new Update().inc("memberCount", delta).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                GroupModel.class);
+        if (group == null) {
+            throw new IllegalArgumentException("Group not found with ID: " + groupId);
         }
-
-        group.removeMember(userId);
-        return groupRepository.save(group);
+        return group;
     }
 
     /**
      * Check if a user is a member of a group
      */
     public boolean isGroupMember(String groupId, String userId) {
-        GroupModel group = getGroupById(groupId);
-        return group.isMember(userId);
+        if (!membershipIndex.containsGroup(groupId)) {
+            throw new IllegalArgumentException("Group not found with ID: " + groupId);
+        }
+        return membershipIndex.isMember(groupId, userId);
     }
 
     /**
      * Get the total number of messages in a group
      */
     public long getGroupMessageCount(String groupId, String userId) {
-        // Verify user is member
-        getGroupWithMemberCheck(groupId, userId);
-        return groupMessageRepository.countByGroupId(groupId);
+        requireMember(groupId, userId, "User is not a member of this group");
+        return messageCount(groupId);
+    }
+
+    // The group's message counter, read without the membership check
+    private long messageCount(String groupId) {
+        Query query = new Query(Criteria.where("id").is(groupId));
+        query.fields().include("messageCount");
+        GroupModel group = mongoTemplate.findOne(query, GroupModel.class);
+        if (group == null) {
+            throw new IllegalArgumentException("Group not found with ID: " + groupId);
+        }
+        return group.getMessageCount();
     }
 
     /**
@@ -189,9 +440,64 @@ public class GroupService {
             throw new IllegalStateException("Only the group creator can delete the group");
         }
 
-        // Delete all group messages first
-        groupMessageRepository.deleteByGroupId(groupId);
-        // Delete the group
-        groupRepository.delete(group);
+        discardGroup(groupId);
+    }
+
+    /**
+     * Takes a deleted user out of their groups. Member counts and in-memory state change here;
+     * the membership rows are purged by the user's deletion job. A group left without members
+     * is deleted, whoever created it. Other groups the user created pass to their
+     * longest-standing remaining member.
+     */
+    @EventListener
+    public void userDeleted(UserDeletedEvent event) {
+        String userId = event.userId();
+        for (String groupId : membershipIndex.groupIds(userId)) {
+            membershipIndex.removeMember(groupId, userId);
+            readReceipts.invalidate(groupId);
+            GroupModel group = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("id").is(groupId)),
+                    new Update().inc("memberCount", -1).set("updatedAt", LocalDateTime.now()),
+                    FindAndModifyOptions.options().returnNew(true),
+                    GroupModel.class);
+            // Nobody would be left to delete it
+            if (group != null && group.getMemberCount() <= 0) {
+                discardGroup(groupId);
+            }
+        }
+
+        for (GroupModel group : groupRepository.findByCreatorId(userId)) {
+            // containsGroup loads a group this instance has not seen yet
+            List<String> members = membershipIndex.containsGroup(group.getId())
+                    ? List.copyOf(membershipIndex.members(group.getId()))
+                    : List.of();
+            if (members.isEmpty()) {
+                discardGroup(group.getId());
+                continue;
+            }
+
+            Query successor = new Query(Criteria.where("groupId").is(group.getId()).and("userId").in(members))
+                    .with(Sort.by(Sort.Direction.ASC, "joinedAt", "userId"))
+                    .limit(1);
+            GroupMembershipModel next = mongoTemplate.findOne(successor, GroupMembershipModel.class);
+            String creatorId = next != null ? next.getUserId() : members.get(0);
+
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("id").is(group.getId())),
+                    new Update().set("creatorId", creatorId).set("updatedAt", LocalDateTime.now()),
+                    GroupModel.class);
+            mongoTemplate.updateFirst(
+                    new Query(Criteria.where("groupId").is(group.getId()).and("userId").is(creatorId)),
+                    new Update().set("role", GroupMembershipModel.Role.CREATOR),
+                    GroupMembershipModel.class);
+        }
+    }
+
+    // The group disappears now; its memberships and messages are purged in the background
+    private void discardGroup(String groupId) {
+        groupRepository.deleteById(groupId);
+        membershipIndex.removeGroup(groupId);
+        readReceipts.invalidate(groupId);
+        deletionService.enqueue(DeletionJobModel.Type.GROUP, groupId);
     }
 }
\ No newline at end of file
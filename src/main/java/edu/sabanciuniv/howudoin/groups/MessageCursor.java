@@ -0,0 +1,48 @@
+package edu.sabanciuniv.howudoin.groups;
+
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque position in a group's message history.
+ * Encodes (created_at, _id) so that ties on created_at still have a total order.
+ */
+public record MessageCursor(LocalDateTime createdAt, ObjectId id)
+{
+    private static final String SEPARATOR = "|";
+
+    public static MessageCursor of(GroupMessagesModel message)
+    {
+        return new MessageCursor(message.getCreatedAt(), new ObjectId(message.getId()));
+    }
+
+    public static MessageCursor decode(String cursor)
+    {
+        try
+        {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0)
+            {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new MessageCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    new ObjectId(raw.substring(separator + 1)));
+        }
+        catch (DateTimeParseException e)
+        {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    public String encode()
+    {
+        String raw = createdAt + SEPARATOR + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
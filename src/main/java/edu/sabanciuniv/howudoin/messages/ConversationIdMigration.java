@@ -0,0 +1,63 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Backfills conversation_id on messages stored before the field existed.
+ * Runs at startup in batches and is safe to re-run: only documents
+ * without the field are touched.
+ */
+@Slf4j
+@Order(1)
+@Component
+@RequiredArgsConstructor
+public class ConversationIdMigration implements ApplicationRunner {
+    private static final String COLLECTION = "messages";
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Query query = new Query(Criteria.where("conversation_id").exists(false)).limit(BATCH_SIZE);
+        query.fields().include("sender_id").include("receiver_id");
+
+        long migrated = 0;
+        List<Document> batch = mongoTemplate.find(query, Document.class, COLLECTION);
+        while (!batch.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, COLLECTION);
+            for (Document message : batch) {
+                String conversationId = MessageModel.conversationIdOf(
+                        message.getString("sender_id"),
+                        message.getString("receiver_id"));
+                bulk.updateOne(
+                        new Query(Criteria.where("_id").is(message.get("_id"))),
+                        new Update().set("conversation_id", conversationId));
+            }
+
+            int modified = bulk.execute().getModifiedCount();
+            if (modified == 0) {
+                break;
+            }
+            migrated += modified;
+            batch = mongoTemplate.find(query, Document.class, COLLECTION);
+        }
+
+        if (migrated > 0) {
+            log.info("Backfilled conversation_id on {} messages", migrated);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds conversation_summaries from existing messages the first time the
+ * projection is deployed. Every conversation is written with the same conditional
+ * upsert as live sends, so rows already touched by new messages keep their newer
+ * preview, and an interrupted run can simply be repeated. A marker in the
+ * migrations collection records completion.
+ * Runs after ConversationIdMigration, since it groups by conversation_id.
+ */
+@Slf4j
+@Order(2)
+@Component
+@RequiredArgsConstructor
+public class ConversationSummaryMigration implements ApplicationRunner {
+    private static final String MESSAGES = "messages";
+    private static final String MIGRATIONS = "migrations";
+    private static final String MARKER_ID = "conversation_summaries";
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (mongoTemplate.exists(new Query(Criteria.where("_id").is(MARKER_ID)), MIGRATIONS)) {
+            return;
+        }
+
+        Map<String, Long> unreadByOwnerAndPeer = countUnread();
+
+        Aggregation latestPerConversation = Aggregation.newAggregation(
+                Aggregation.sort(Sort.Direction.DESC, "created_at"),
+                Aggregation.group("conversation_id")
+                        .first("_id").as("lastMessageId")
+                        .first("sender_id").as("senderId")
+                        .first("receiver_id").as("receiverId")
+                        .first("content").as("content")
+                        .first("created_at").as("createdAt")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        List<Document> conversations = mongoTemplate
+                .aggregate(latestPerConversation, MESSAGES, Document.class)
+                .getMappedResults();
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConversationSummaryModel.class);
+        int pending = 0;
+        for (Document conversation : conversations) {
+            String senderId = conversation.getString("senderId");
+            String receiverId = conversation.getString("receiverId");
+            if (senderId == null || receiverId == null || conversation.getDate("createdAt") == null) {
+                continue;
+            }
+            bulk.upsert(ownerAndPeer(senderId, receiverId), summaryUpdate(conversation,
+                    unreadByOwnerAndPeer.getOrDefault(senderId + ":" + receiverId, 0L)));
+            bulk.upsert(ownerAndPeer(receiverId, senderId), summaryUpdate(conversation,
+                    unreadByOwnerAndPeer.getOrDefault(receiverId + ":" + senderId, 0L)));
+            pending += 2;
+
+            if (pending >= BATCH_SIZE) {
+                bulk.execute();
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConversationSummaryModel.class);
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            bulk.execute();
+        }
+
+        mongoTemplate.save(new Document("_id", MARKER_ID).append("completed_at", new Date()), MIGRATIONS);
+        log.info("Built conversation summaries for {} conversations", conversations.size());
+    }
+
+    // Unread messages per receiver and sender, keyed "receiverId:senderId"
+    private Map<String, Long> countUnread() {
+        Aggregation unread = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("status").in("SENT", "DELIVERED")),
+                Aggregation.group("receiver_id", "sender_id").count().as("count")
+        ).withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(unread, MESSAGES, Document.class).getMappedResults()) {
+            Document key = row.get("_id", Document.class);
+            counts.put(key.getString("receiver_id") + ":" + key.getString("sender_id"),
+                    ((Number) row.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    // The counted unread total, unless live sends since the count already pushed the row higher
+    private AggregationUpdate summaryUpdate(Document conversation, long unreadCount) {
+        Document unread = new Document("$max", List.of(new Document("$ifNull", List.of("$unread_count", 0L)), unreadCount));
+        return ConversationSummaryService.lastMessageUpdate(
+                conversation.getString("_id"),
+                conversation.get("lastMessageId").toString(),
+                conversation.getString("content"),
+                conversation.getString("senderId"),
+                toLocalDateTime(conversation.getDate("createdAt")),
+                unread);
+    }
+
+    private Query ownerAndPeer(String ownerId, String peerId) {
+        return new Query(Criteria.where("ownerId").is(ownerId).and("peerId").is(peerId));
+    }
+
+    private LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
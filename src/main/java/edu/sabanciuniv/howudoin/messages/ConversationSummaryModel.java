@@ -0,0 +1,72 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+
+/**
+ * One inbox row per (owner, peer) pair, maintained incrementally on send and read.
+ * Each conversation has two rows, one for each participant.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "conversation_summaries")
+@CompoundIndexes({
+        @CompoundIndex(name = "owner_peer", def = "{ 'owner_id': 1, 'peer_id': 1 }", unique = true),
+        @CompoundIndex(name = "owner_last_message_at", def = "{ 'owner_id': 1, 'last_message_at': -1 }"),
+        @CompoundIndex(name = "owner_unread_count", def = "{ 'owner_id': 1, 'unread_count': -1 }")
+})
+public class ConversationSummaryModel
+{
+    public static final int PREVIEW_LENGTH = 100;
+
+    @Id
+    private String id;
+
+    @Field("owner_id")
+    private String ownerId;
+
+    @Field("peer_id")
+    private String peerId;
+
+    @Field("conversation_id")
+    private String conversationId;
+
+    @Field("last_message_id")
+    private String lastMessageId;
+
+    @Field("last_message_preview")
+    private String lastMessagePreview;
+
+    @Field("last_sender_id")
+    private String lastSenderId;
+
+    @Field("last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    @Field("unread_count")
+    private long unreadCount;
+
+    // Everything the owner received up to this time has been read
+    @Field("read_up_to")
+    private LocalDateTime readUpTo;
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+
+    public static String preview(String content)
+    {
+        if (content == null || content.length() <= PREVIEW_LENGTH)
+        {
+            return content;
+        }
+        return content.substring(0, PREVIEW_LENGTH);
+    }
+}
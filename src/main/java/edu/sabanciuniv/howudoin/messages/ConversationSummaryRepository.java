@@ -0,0 +1,13 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ConversationSummaryRepository extends MongoRepository<ConversationSummaryModel, String> {
+
+    // Inbox sorted by recency, served by the (owner_id, last_message_at) index
+    Slice<ConversationSummaryModel> findByOwnerIdOrderByLastMessageAtDesc(String ownerId, Pageable pageable);
+}
@@ -0,0 +1,154 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Maintains the conversation_summaries projection that backs the inbox.
+ * Every change is a targeted upsert or $inc, never a scan of the messages collection.
+ * Summary upserts are update pipelines, so their fields are written with stored names.
+ */
+@Service
+@RequiredArgsConstructor
+public class ConversationSummaryService {
+    private final ConversationSummaryRepository conversationSummaryRepository;
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Update both participants' inbox rows for a newly stored message.
+     * The receiver's unread count is incremented in the same round trip.
+     */
+    public void recordMessage(MessageModel message) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ConversationSummaryModel.class);
+
+        bulk.upsert(
+                ownerAndPeer(message.getSenderId(), message.getReceiverId()),
+                lastMessageUpdate(message.getConversationId(), message.getId(), message.getContent(),
+                        message.getSenderId(), message.getCreatedAt(), unreadPlus(0)));
+        bulk.upsert(
+                ownerAndPeer(message.getReceiverId(), message.getSenderId()),
+                lastMessageUpdate(message.getConversationId(), message.getId(), message.getContent(),
+                        message.getSenderId(), message.getCreatedAt(), unreadPlus(1)));
+
+        bulk.execute();
+    }
+
+    /**
+     * Decrease the owner's unread count for a conversation after messages were read.
+     */
+    public void markRead(String ownerId, String peerId, long readCount) {
+        if (readCount <= 0) {
+            return;
+        }
+        mongoTemplate.updateFirst(
+                ownerAndPeer(ownerId, peerId),
+                new Update().inc("unreadCount", -readCount).set("updatedAt", LocalDateTime.now()),
+                ConversationSummaryModel.class);
+    }
+
+    /**
+     * Advance the owner's read watermark for a conversation and drop the unread
+     * count by the number of messages that were just marked read.
+     */
+    public void markReadUpTo(String ownerId, String peerId, LocalDateTime readUpTo, long readCount) {
+        Update update = new Update()
+                .max("readUpTo", readUpTo)
+                .set("updatedAt", LocalDateTime.now());
+        if (readCount > 0) {
+            update.inc("unreadCount", -readCount);
+        }
+        mongoTemplate.updateFirst(ownerAndPeer(ownerId, peerId), update, ConversationSummaryModel.class);
+    }
+
+    /**
+     * Remove the owner's inbox row for a deleted conversation.
+     * Returns the unread count the row still held, so the caller can take it off the badge total.
+     */
+    public long removeConversation(String ownerId, String peerId) {
+        ConversationSummaryModel removed = mongoTemplate.findAndRemove(ownerAndPeer(ownerId, peerId), ConversationSummaryModel.class);
+        return removed != null ? Math.max(removed.getUnreadCount(), 0) : 0;
+    }
+
+    /**
+     * Peers of every conversation in the owner's inbox.
+     */
+    public List<String> peerIds(String ownerId) {
+        Query query = new Query(Criteria.where("ownerId").is(ownerId));
+        query.fields().include("peerId");
+        return mongoTemplate.find(query, ConversationSummaryModel.class).stream()
+                .map(ConversationSummaryModel::getPeerId)
+                .toList();
+    }
+
+    /**
+     * Remove every inbox row of the owner.
+     */
+    public void removeInbox(String ownerId) {
+        mongoTemplate.remove(new Query(Criteria.where("ownerId").is(ownerId)), ConversationSummaryModel.class);
+    }
+
+    /**
+     * The user's conversations, most recent first.
+     */
+    public Slice<ConversationSummaryModel> getInbox(String ownerId, Pageable pageable) {
+        return conversationSummaryRepository.findByOwnerIdOrderByLastMessageAtDesc(ownerId, pageable);
+    }
+
+    private Query ownerAndPeer(String ownerId, String peerId) {
+        return new Query(Criteria.where("ownerId").is(ownerId).and("peerId").is(peerId));
+    }
+
+    /**
+     * Pipeline upsert of a summary row for a message. The last-message fields only change
+     * when the message is newer than the row's current one, so a slower concurrent send
+     * of an older message cannot take over the preview or the inbox order.
+     */
+    static AggregationUpdate lastMessageUpdate(String conversationId, String messageId, String content,
+                                               String senderId, LocalDateTime createdAt, Document unreadCount) {
+        Date messageAt = toDate(createdAt);
+        Document newer = new Document("$lt", List.of("$last_message_at", messageAt));
+
+        Document fields = new Document()
+                .append("conversation_id", literal(conversationId))
+                .append("last_message_id", ifNewer(newer, "last_message_id", messageId))
+                .append("last_message_preview", ifNewer(newer, "last_message_preview", ConversationSummaryModel.preview(content)))
+                .append("last_sender_id", ifNewer(newer, "last_sender_id", senderId))
+                .append("last_message_at", ifNewer(newer, "last_message_at", messageAt))
+                .append("unread_count", unreadCount)
+                .append("updated_at", literal(toDate(LocalDateTime.now())));
+        return AggregationUpdate.from(List.of(context -> new Document("$set", fields)));
+    }
+
+    // Current unread count plus the given increment, treating a new row as zero
+    static Document unreadPlus(long increment) {
+        return new Document("$add", List.of(new Document("$ifNull", List.of("$unread_count", 0L)), increment));
+    }
+
+    private static Document ifNewer(Document newer, String field, Object value) {
+        return new Document("$cond", List.of(newer, literal(value), "$" + field));
+    }
+
+    // Message text may start with '$', which the pipeline would read as a field path
+    private static Document literal(Object value) {
+        return new Document("$literal", value);
+    }
+
+    // Same conversion the mapping layer applies to LocalDateTime fields
+    private static Date toDate(LocalDateTime dateTime) {
+        return Date.from(dateTime.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,15 @@
+package edu.sabanciuniv.howudoin.messages.DTO;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ReadReceiptRequest
+{
+    // Read everything up to and including this message
+    private String upToMessageId;
+
+    // Or everything received up to this time; when both are empty, up to now
+    private LocalDateTime upTo;
+}
@@ -0,0 +1,14 @@
+package edu.sabanciuniv.howudoin.messages.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class ReadReceiptResponse
+{
+    private long readCount;
+    private LocalDateTime readUpTo;
+}
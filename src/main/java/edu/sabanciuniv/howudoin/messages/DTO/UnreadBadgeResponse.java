@@ -0,0 +1,16 @@
+package edu.sabanciuniv.howudoin.messages.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+public class UnreadBadgeResponse
+{
+    private long total;
+
+    // Peer id to unread count, only conversations with unread messages
+    private Map<String, Long> conversations;
+}
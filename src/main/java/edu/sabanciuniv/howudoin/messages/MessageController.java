@@ -1,15 +1,21 @@
 package edu.sabanciuniv.howudoin.messages;
 
+import edu.sabanciuniv.howudoin.messages.DTO.ReadReceiptRequest;
+import edu.sabanciuniv.howudoin.messages.DTO.ReadReceiptResponse;
+import edu.sabanciuniv.howudoin.messages.DTO.UnreadBadgeResponse;
 import edu.sabanciuniv.howudoin.security.DTO.ApiResponse;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/messages")
 @RequiredArgsConstructor
@@ -42,26 +48,69 @@ public class MessageController {
         }
     }
 
+    @PostMapping("/{messageId}/delivered")
+    public ResponseEntity<?> markDelivered(
+            @PathVariable String messageId,
+            @RequestHeader("User-Id") String userId) {
+        try {
+            messageService.markMessageAsDelivered(messageId, userId);
+            return ResponseEntity.ok(new ApiResponse(true, "Message marked as delivered"));
+        } catch (IllegalStateException | IllegalArgumentException exception) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, exception.getMessage()));
+        }
+    }
+
+    @PostMapping("/{messageId}/read")
+    public ResponseEntity<?> markRead(
+            @PathVariable String messageId,
+            @RequestHeader("User-Id") String userId) {
+        try {
+            messageService.markMessageAsRead(messageId, userId);
+            return ResponseEntity.ok(new ApiResponse(true, "Message marked as read"));
+        } catch (IllegalStateException | IllegalArgumentException exception) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, exception.getMessage()));
+        }
+    }
+
+    @PostMapping("/conversation/{userId}/read")
+    public ResponseEntity<?> markConversationRead(
+            @PathVariable String userId,
+            @RequestBody(required = false) ReadReceiptRequest request,
+            @RequestHeader("User-Id") String currentUserId) {
+        try {
+            ReadReceiptResponse receipt = messageService.markConversationAsRead(
+                    currentUserId,
+                    userId,
+                    request != null ? request.getUpToMessageId() : null,
+                    request != null ? request.getUpTo() : null);
+            return ResponseEntity.ok(receipt);
+        } catch (IllegalStateException | IllegalArgumentException exception) {
+            return ResponseEntity.badRequest().body(new ApiResponse(false, exception.getMessage()));
+        }
+    }
+
+    @GetMapping("/unread/count")
+    public ResponseEntity<UnreadBadgeResponse> getUnreadCount(@RequestHeader("User-Id") String userId) {
+        return ResponseEntity.ok(messageService.getUnreadBadges(userId));
+    }
+
+    @GetMapping("/inbox")
+    public ResponseEntity<?> getInbox(
+            @RequestHeader("User-Id") String userId,
+            Pageable pageable) {
+        Slice<ConversationSummaryModel> inbox = messageService.getInbox(userId, pageable);
+        return ResponseEntity.ok(inbox);
+    }
+
     @GetMapping("/all")
     public ResponseEntity<?> getAllConversations(
             @RequestHeader("User-Id") String userId,
             Pageable pageable) {
         try {
-            System.out.println("Received request for all messages. User ID: " + userId);
-            System.out.println("Pageable settings: " + pageable);
-
             List<MessageModel> messages = messageService.getAllUserConversations(userId, pageable);
-
-            System.out.println("Returning " + (messages != null ? messages.size() : 0) + " messages");
-
-            if (messages == null || messages.isEmpty()) {
-                System.out.println("No messages found for user: " + userId);
-            }
-
             return ResponseEntity.ok(messages);
         } catch (Exception e) {
-            System.err.println("Error processing request: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Could not load messages of user {}", userId, e);
             return ResponseEntity.badRequest().body(new ApiResponse(false, e.getMessage()));
         }
     }
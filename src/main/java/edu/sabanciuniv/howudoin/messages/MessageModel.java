@@ -6,6 +6,8 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -15,6 +17,10 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "messages")
+@CompoundIndexes({
+        @CompoundIndex(name = "conversation_created_at", def = "{ 'conversation_id': 1, 'created_at': -1 }"),
+        @CompoundIndex(name = "receiver_status", def = "{ 'receiver_id': 1, 'status': 1 }")
+})
 public class MessageModel
 {
     @Id
@@ -29,6 +35,9 @@ public class MessageModel
     @Field("receiver_id")
     private String receiverId;
 
+    // Ordered user-pair key, identical for both directions of a conversation
+    @Field("conversation_id")
+    private String conversationId;
 
     @NotBlank
     @Field("content")
@@ -62,6 +71,11 @@ public class MessageModel
         }
         updatedAt = LocalDateTime.now();
 
+        if (conversationId == null)
+        {
+            conversationId = conversationIdOf(senderId, receiverId);
+        }
+
         if (status == null)
         {
             status = MessageStatus.SENT;
@@ -69,6 +83,18 @@ public class MessageModel
 
     }
 
+    // Build the canonical conversation key, independent of who sent the message
+    public static String conversationIdOf(String user1Id, String user2Id)
+    {
+        if (user1Id == null || user2Id == null)
+        {
+            return null;
+        }
+        return user1Id.compareTo(user2Id) <= 0
+                ? user1Id + ":" + user2Id
+                : user2Id + ":" + user1Id;
+    }
+
     // Validate that sender and receiver are different
     public boolean isValid()
     {
@@ -0,0 +1,55 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+
+/**
+ * Pushes newly stored messages to the recipients' open WebSocket sessions.
+ * Users without a connected session are skipped; they catch up over REST.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessagePushService {
+    public static final String DIRECT_MESSAGES_QUEUE = "/queue/messages";
+    public static final String GROUP_MESSAGES_QUEUE = "/queue/group-messages";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+
+    /**
+     * Push a direct message to the receiver's sessions
+     */
+    public void pushDirectMessage(MessageModel message) {
+        pushToUser(message.getReceiverId(), DIRECT_MESSAGES_QUEUE, message);
+    }
+
+    /**
+     * Push a payload to every listed user except the excluded one (usually the sender)
+     */
+    public void pushToUsers(Collection<String> userIds, String excludedUserId, String destination, Object payload) {
+        for (String userId : userIds) {
+            if (!userId.equals(excludedUserId)) {
+                pushToUser(userId, destination, payload);
+            }
+        }
+    }
+
+    private void pushToUser(String userId, String destination, Object payload) {
+        if (userRegistry.getUser(userId) == null) {
+            return;
+        }
+        try {
+            messagingTemplate.convertAndSendToUser(userId, destination, payload);
+        } catch (MessagingException exception) {
+            // The message is already stored, so a failed push only delays delivery
+            log.warn("Could not push to user {}: {}", userId, exception.getMessage());
+        }
+    }
+}
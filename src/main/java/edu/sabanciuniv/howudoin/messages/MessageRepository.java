@@ -12,15 +12,19 @@ import java.util.List;
 @Repository
 public interface MessageRepository extends MongoRepository<MessageModel, String> {
 
+    // Conversation history as one range scan over the (conversation_id, created_at) index
+    Page<MessageModel> findByConversationIdOrderByCreatedAtDesc(String conversationId, Pageable pageable);
+
+    // History of a conversation whose older messages are still being purged
+    Page<MessageModel> findByConversationIdAndCreatedAtAfterOrderByCreatedAtDesc(String conversationId, LocalDateTime after, Pageable pageable);
+
     // Find messages between two users (conversation history)
-    @Query("{ $or: [ " +
-            "{ 'senderId': ?0, 'receiverId': ?1 }, " +
-            "{ 'senderId': ?1, 'receiverId': ?0 } " +
-            "] }")
-    Page<MessageModel> findMessagesBetweenUsers(String user1Id, String user2Id, Pageable pageable);
+    default Page<MessageModel> findMessagesBetweenUsers(String user1Id, String user2Id, Pageable pageable) {
+        return findByConversationIdOrderByCreatedAtDesc(MessageModel.conversationIdOf(user1Id, user2Id), pageable);
+    }
 
     // Find unread messages for a user
-    @Query("{ 'receiverId': ?0, 'status': { $in: ['SENT', 'DELIVERED'] } }")
+    @Query("{ 'receiver_id': ?0, 'status': { $in: ['SENT', 'DELIVERED'] } }")
     List<MessageModel> findUnreadMessagesForUser(String userId);
 
     // Find messages sent by a user
@@ -32,28 +36,27 @@ public interface MessageRepository extends MongoRepository<MessageModel, String>
     // Find messages after a certain date
     List<MessageModel> findByCreatedAtAfter(LocalDateTime date);
 
+    MessageModel findFirstByConversationIdOrderByCreatedAtDesc(String conversationId);
+
     // Find latest message between two users
-    @Query(value = "{ $or: [ " +
-            "{ 'senderId': ?0, 'receiverId': ?1 }, " +
-            "{ 'senderId': ?1, 'receiverId': ?0 } " +
-            "] }",
-            sort = "{ 'createdAt': -1 }")
-    MessageModel findLatestMessageBetweenUsers(String user1Id, String user2Id);
+    default MessageModel findLatestMessageBetweenUsers(String user1Id, String user2Id) {
+        return findFirstByConversationIdOrderByCreatedAtDesc(MessageModel.conversationIdOf(user1Id, user2Id));
+    }
 
     // Find all messages for a user (either as sender or receiver)
     @Query("{ $or: [ " +
-            "{ 'senderId': ?0 }, " +
-            "{ 'receiverId': ?0 } " +
+            "{ 'sender_id': ?0 }, " +
+            "{ 'receiver_id': ?0 } " +
             "] }")
     Page<MessageModel> findAllUserMessages(String userId, Pageable pageable);
 
     // Count unread messages for a user
     long countByReceiverIdAndStatusIn(String receiverId, List<MessageModel.MessageStatus> statuses);
 
+    long deleteByConversationId(String conversationId);
+
     // Delete all messages between two users
-    @Query(value = "{ $or: [ " +
-            "{ 'senderId': ?0, 'receiverId': ?1 }, " +
-            "{ 'senderId': ?1, 'receiverId': ?0 } " +
-            "] }")
-    void deleteMessagesBetweenUsers(String user1Id, String user2Id);
+    default void deleteMessagesBetweenUsers(String user1Id, String user2Id) {
+        deleteByConversationId(MessageModel.conversationIdOf(user1Id, user2Id));
+    }
 }
\ No newline at end of file
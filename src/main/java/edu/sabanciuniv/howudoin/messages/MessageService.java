@@ -1,24 +1,46 @@
 package edu.sabanciuniv.howudoin.messages;
 
+import edu.sabanciuniv.howudoin.deletion.DeletionJobModel;
+import edu.sabanciuniv.howudoin.deletion.DeletionService;
+import edu.sabanciuniv.howudoin.messages.DTO.ReadReceiptResponse;
+import edu.sabanciuniv.howudoin.messages.DTO.UnreadBadgeResponse;
+import edu.sabanciuniv.howudoin.users.UserDeletedEvent;
 import edu.sabanciuniv.howudoin.users.UserService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class MessageService {
+    private static final List<MessageModel.MessageStatus> UNREAD_STATUSES =
+            List.of(MessageModel.MessageStatus.SENT, MessageModel.MessageStatus.DELIVERED);
+
     private final MessageRepository messageRepository;
+    private final MongoTemplate mongoTemplate;
     private final UserService userService;
+    private final MessagePushService messagePushService;
+    private final ConversationSummaryService conversationSummaryService;
+    private final UnreadCounterService unreadCounterService;
+    private final DeletionService deletionService;
 
     /**
      * Send a message from one user to another.
-     * Validates that users are friends before allowing message sending.
+     * Validates that users are friends before allowing message sending,
+     * then pushes the stored message to the receiver's open sessions.
      */
     @Transactional
     public MessageModel sendMessage(String senderId, String receiverId, String content) {
@@ -37,7 +59,11 @@ public class MessageService {
         if (!message.isValid()) {
             throw new IllegalArgumentException("Looks like you're trying to send a message to yourself—try someone else!");
         }
-        return messageRepository.save(message);
+        MessageModel saved = messageRepository.save(message);
+        conversationSummaryService.recordMessage(saved);
+        unreadCounterService.increment(receiverId);
+        messagePushService.pushDirectMessage(saved);
+        return saved;
     }
 
     /**
@@ -49,45 +75,103 @@ public class MessageService {
         if (!userService.areFriends(user1Id, user2Id)) {
             throw new IllegalStateException("It looks like you don't have a conversation history yet because you're not friends!");
         }
-        return messageRepository.findMessagesBetweenUsers(user1Id, user2Id, pageable);
+        String conversationId = MessageModel.conversationIdOf(user1Id, user2Id);
+        LocalDateTime deletedUpTo = deletionService.conversationCutoff(conversationId);
+        if (deletedUpTo != null) {
+            return messageRepository.findByConversationIdAndCreatedAtAfterOrderByCreatedAtDesc(conversationId, deletedUpTo, pageable);
+        }
+        return messageRepository.findByConversationIdOrderByCreatedAtDesc(conversationId, pageable);
     }
 
     /**
      * Mark a message as delivered when it reaches the recipient's device.
+     * One conditional update; the message is only loaded when nothing matched.
      */
     @Transactional
     public void markMessageAsDelivered(String messageId, String receiverId) {
-        MessageModel message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new IllegalArgumentException("Message not found"));
-
-        if (!message.getReceiverId().equals(receiverId)) {
-            throw new IllegalStateException("User not authorized to mark this message as delivered");
-        }
+        Query query = new Query(Criteria.where("id").is(messageId)
+                .and("receiverId").is(receiverId)
+                .and("status").is(MessageModel.MessageStatus.SENT));
+        Update update = new Update()
+                .set("status", MessageModel.MessageStatus.DELIVERED)
+                .set("updatedAt", LocalDateTime.now());
 
-        if (message.getStatus() == MessageModel.MessageStatus.SENT) {
-            message.setStatus(MessageModel.MessageStatus.DELIVERED);
-            message.setUpdatedAt(LocalDateTime.now());
-            messageRepository.save(message);
+        if (mongoTemplate.updateFirst(query, update, MessageModel.class).getMatchedCount() == 0) {
+            checkReceiver(messageId, receiverId, "User not authorized to mark this message as delivered");
         }
     }
 
     /**
      * Mark a message as read when the recipient opens it.
+     * One conditional update; the message is only loaded when nothing matched.
      */
     @Transactional
     public void markMessageAsRead(String messageId, String receiverId) {
+        Query query = new Query(Criteria.where("id").is(messageId)
+                .and("receiverId").is(receiverId)
+                .and("status").in(UNREAD_STATUSES));
+        Update update = new Update()
+                .set("status", MessageModel.MessageStatus.READ)
+                .set("updatedAt", LocalDateTime.now());
+
+        MessageModel previous = mongoTemplate.findAndModify(query, update, MessageModel.class);
+        if (previous == null) {
+            checkReceiver(messageId, receiverId, "User not authorized to mark this message as read");
+            return;
+        }
+        conversationSummaryService.markRead(receiverId, previous.getSenderId(), 1);
+        unreadCounterService.decrement(receiverId, 1);
+    }
+
+    /**
+     * Mark every unread message from the peer up to a watermark as read.
+     * The watermark is the given message's timestamp, the given time, or now.
+     * One updateMulti on the messages plus one update of the reader's conversation summary.
+     */
+    @Transactional
+    public ReadReceiptResponse markConversationAsRead(String receiverId, String peerId, String upToMessageId, LocalDateTime upTo) {
+        String conversationId = MessageModel.conversationIdOf(receiverId, peerId);
+
+        LocalDateTime readUpTo = upTo != null ? upTo : LocalDateTime.now();
+        if (upToMessageId != null) {
+            MessageModel message = messageRepository.findById(upToMessageId)
+                    .orElseThrow(() -> new IllegalArgumentException("Message not found"));
+            if (!conversationId.equals(message.getConversationId())) {
+                throw new IllegalArgumentException("Message does not belong to this conversation");
+            }
+            readUpTo = message.getCreatedAt();
+        }
+
+        Query query = new Query(Criteria.where("conversationId").is(conversationId)
+                .and("receiverId").is(receiverId)
+                .and("status").in(UNREAD_STATUSES)
+                .and("createdAt").lte(readUpTo));
+        Update update = new Update()
+                .set("status", MessageModel.MessageStatus.READ)
+                .set("updatedAt", LocalDateTime.now());
+
+        long readCount = mongoTemplate.updateMulti(query, update, MessageModel.class).getModifiedCount();
+        conversationSummaryService.markReadUpTo(receiverId, peerId, readUpTo, readCount);
+        unreadCounterService.decrement(receiverId, readCount);
+
+        return new ReadReceiptResponse(readCount, readUpTo);
+    }
+
+    // Resolve why a conditional status update matched nothing
+    private void checkReceiver(String messageId, String receiverId, String unauthorizedMessage) {
         MessageModel message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new IllegalArgumentException("Message not found"));
 
         if (!message.getReceiverId().equals(receiverId)) {
-            throw new IllegalStateException("User not authorized to mark this message as read");
+            throw new IllegalStateException(unauthorizedMessage);
         }
+    }
 
-        if (message.getStatus() != MessageModel.MessageStatus.READ) {
-            message.setStatus(MessageModel.MessageStatus.READ);
-            message.setUpdatedAt(LocalDateTime.now());
-            messageRepository.save(message);
-        }
+    /**
+     * Get the unread badge totals for a user, read from the counters only
+     */
+    public UnreadBadgeResponse getUnreadBadges(String userId) {
+        return unreadCounterService.getBadges(userId);
     }
 
     /**
@@ -106,7 +190,26 @@ public class MessageService {
         if (!userService.areFriends(user1Id, user2Id)) {
             throw new IllegalStateException("There's no conversation to delete because you're not friends yet!");
         }
-        messageRepository.deleteMessagesBetweenUsers(user1Id, user2Id);
+        // Hidden from now on by the tombstone; the messages are purged in the background
+        deletionService.enqueue(DeletionJobModel.Type.CONVERSATION, MessageModel.conversationIdOf(user1Id, user2Id));
+
+        // Inbox rows and badge totals stop counting the hidden messages right away
+        unreadCounterService.decrement(user1Id, conversationSummaryService.removeConversation(user1Id, user2Id));
+        unreadCounterService.decrement(user2Id, conversationSummaryService.removeConversation(user2Id, user1Id));
+    }
+
+    /**
+     * Takes a deleted user's conversations out of their peers' inboxes and badge totals,
+     * and drops the user's own inbox and counter.
+     */
+    @EventListener
+    public void userDeleted(UserDeletedEvent event) {
+        String userId = event.userId();
+        for (String peerId : conversationSummaryService.peerIds(userId)) {
+            unreadCounterService.decrement(peerId, conversationSummaryService.removeConversation(peerId, userId));
+        }
+        conversationSummaryService.removeInbox(userId);
+        unreadCounterService.remove(userId);
     }
 
     /**
@@ -128,29 +231,29 @@ public class MessageService {
      */
     public List<MessageModel> getAllUserConversations(String userId, Pageable pageable) {
         // Get all messages where user is either sender or receiver
-        System.out.println("Fetching conversations for user: " + userId);
         Page<MessageModel> messagePage = messageRepository.findAllUserMessages(userId, pageable);
         List<MessageModel> messages = messagePage.getContent();
-        System.out.println("Found " + messages.size() + " messages for user " + userId);
-
-        // Log some sample messages if any exist
-        if (!messages.isEmpty()) {
-            System.out.println("Sample message - First message in list:");
-            System.out.println("ID: " + messages.get(0).getId());
-            System.out.println("Sender: " + messages.get(0).getSenderId());
-            System.out.println("Receiver: " + messages.get(0).getReceiverId());
-            System.out.println("Content: " + messages.get(0).getContent());
-            System.out.println("Status: " + messages.get(0).getStatus());
-            System.out.println("Created At: " + messages.get(0).getCreatedAt());
-        }
+        log.debug("Found {} messages for user {}", messages.size(), userId);
 
         return messages;
     }
 
+    /**
+     * Get the user's inbox: one summary per conversation, most recent first
+     */
+    public Slice<ConversationSummaryModel> getInbox(String userId, Pageable pageable) {
+        return conversationSummaryService.getInbox(userId, pageable);
+    }
+
     /**
      * Get the latest message between two users
      */
     public MessageModel getLatestMessage(String user1Id, String user2Id) {
-        return messageRepository.findLatestMessageBetweenUsers(user1Id, user2Id);
+        MessageModel latest = messageRepository.findLatestMessageBetweenUsers(user1Id, user2Id);
+        LocalDateTime deletedUpTo = deletionService.conversationCutoff(MessageModel.conversationIdOf(user1Id, user2Id));
+        if (latest != null && deletedUpTo != null && !latest.getCreatedAt().isAfter(deletedUpTo)) {
+            return null;
+        }
+        return latest;
     }
 }
@@ -0,0 +1,60 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Seeds unread_counters from the conversation summaries the first time the
+ * counters are deployed. Runs after ConversationSummaryMigration.
+ */
+@Slf4j
+@Order(3)
+@Component
+@RequiredArgsConstructor
+public class UnreadCounterMigration implements ApplicationRunner {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (mongoTemplate.count(new Query(), UnreadCounterModel.class) > 0) {
+            return;
+        }
+
+        Aggregation totals = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("unread_count").gt(0)),
+                Aggregation.group("owner_id").sum("unread_count").as("total"));
+
+        List<Document> rows = mongoTemplate
+                .aggregate(totals, "conversation_summaries", Document.class)
+                .getMappedResults();
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UnreadCounterModel.class);
+        for (Document row : rows) {
+            bulk.upsert(
+                    new Query(Criteria.where("id").is(row.getString("_id"))),
+                    new Update()
+                            .set("total", ((Number) row.get("total")).longValue())
+                            .set("updatedAt", LocalDateTime.now()));
+        }
+        bulk.execute();
+
+        log.info("Seeded unread counters for {} users", rows.size());
+    }
+}
@@ -0,0 +1,30 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+
+/**
+ * Total unread direct messages of a user, keyed by user id.
+ * Kept with atomic $inc on send and read so badge reads are a single _id lookup.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "unread_counters")
+public class UnreadCounterModel
+{
+    // Same as the user id
+    @Id
+    private String id;
+
+    @Field("total")
+    private long total;
+
+    @Field("updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,81 @@
+package edu.sabanciuniv.howudoin.messages;
+
+import edu.sabanciuniv.howudoin.messages.DTO.UnreadBadgeResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-user unread totals. Per-conversation counts live on the conversation summaries.
+ * Neither is ever derived from the messages collection at read time.
+ */
+@Service
+@RequiredArgsConstructor
+public class UnreadCounterService {
+    private static final int MAX_BADGE_CONVERSATIONS = 100;
+
+    private final MongoTemplate mongoTemplate;
+
+    /**
+     * Count one new unread message for the user.
+     */
+    public void increment(String userId) {
+        mongoTemplate.upsert(
+                byUser(userId),
+                new Update().inc("total", 1L).set("updatedAt", LocalDateTime.now()),
+                UnreadCounterModel.class);
+    }
+
+    /**
+     * Remove messages that were just read from the user's total.
+     */
+    public void decrement(String userId, long readCount) {
+        if (readCount <= 0) {
+            return;
+        }
+        mongoTemplate.updateFirst(
+                byUser(userId),
+                new Update().inc("total", -readCount).set("updatedAt", LocalDateTime.now()),
+                UnreadCounterModel.class);
+    }
+
+    /**
+     * Drop the user's counter.
+     */
+    public void remove(String userId) {
+        mongoTemplate.remove(byUser(userId), UnreadCounterModel.class);
+    }
+
+    /**
+     * Badge totals: the user's overall unread count and the unread count per peer.
+     */
+    public UnreadBadgeResponse getBadges(String userId) {
+        UnreadCounterModel counter = mongoTemplate.findById(userId, UnreadCounterModel.class);
+        long total = counter != null ? Math.max(counter.getTotal(), 0) : 0;
+
+        Map<String, Long> conversations = new LinkedHashMap<>();
+        if (total > 0) {
+            Query unreadConversations = new Query(Criteria.where("ownerId").is(userId).and("unreadCount").gt(0))
+                    .with(Sort.by(Sort.Direction.DESC, "unreadCount"))
+                    .limit(MAX_BADGE_CONVERSATIONS);
+            unreadConversations.fields().include("peerId").include("unreadCount");
+
+            for (ConversationSummaryModel summary : mongoTemplate.find(unreadConversations, ConversationSummaryModel.class)) {
+                conversations.put(summary.getPeerId(), summary.getUnreadCount());
+            }
+        }
+        return new UnreadBadgeResponse(total, conversations);
+    }
+
+    private Query byUser(String userId) {
+        return new Query(Criteria.where("id").is(userId));
+    }
+}
@@ -1,25 +1,37 @@
 package edu.sabanciuniv.howudoin.security;
 
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import edu.sabanciuniv.howudoin.security.DTO.LoginRequest;
 import edu.sabanciuniv.howudoin.security.DTO.SignUpRequest;
 import edu.sabanciuniv.howudoin.security.DTO.JwtAuthenticationResponse;
 import edu.sabanciuniv.howudoin.security.DTO.ApiResponse;
+import edu.sabanciuniv.howudoin.security.DTO.RefreshTokenRequest;
 
+import edu.sabanciuniv.howudoin.configuration.TaskExecutionConfiguration;
 import edu.sabanciuniv.howudoin.users.UserModel;
 import edu.sabanciuniv.howudoin.users.UserService;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 import lombok.RequiredArgsConstructor;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -35,50 +47,174 @@ public class AuthenticationController
     private final UserService userService;
     private final PasswordEncoder passwordEncoder;
     private final JwtWebTokenProvider tokenProvider;
-
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final LoginAttemptLimiter loginAttemptLimiter;
+    private final RefreshTokenService refreshTokenService;
+    // Work after the hash leaves the hashing pool for this one
+    @Qualifier(TaskExecutionConfiguration.AUTHENTICATION_EXECUTOR)
+    private final Executor authenticationExecutor;
+
+    /**
+     * The password check runs on the hashing pool, so the servlet thread is released while BCrypt works.
+     * Token signing and the refresh token insert run on the authentication executor, keeping the pool for hashing only.
+     * Repeated failures for the account or the client address are refused before any hashing;
+     * each admitted attempt holds a limiter slot until its check has finished.
+     */
     @PostMapping("/login")
-    public ResponseEntity<?> login(@Valid @RequestBody LoginRequest loginRequest)
+    public CompletableFuture<ResponseEntity<?>> login(
+            @Valid @RequestBody LoginRequest loginRequest,
+            HttpServletRequest request)
+    {
+        String email = loginRequest.getEmail();
+        String clientIp = request.getRemoteAddr();
+
+        long retryAfter = loginAttemptLimiter.tryAcquire(email, clientIp);
+        if (retryAfter > 0)
+        {
+            return CompletableFuture.completedFuture(rejected(HttpStatus.TOO_MANY_REQUESTS, retryAfter,
+                    "Too many failed login attempts, try again later"));
+        }
+
+        try
+        {
+            return passwordHashingExecutor.submit(() -> checkPassword(email, loginRequest.getPassword(), clientIp))
+                    .<ResponseEntity<?>>thenApplyAsync(authentication -> {
+                        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
+                        String jwt = tokenProvider.generateToken(userDetails);
+                        String refreshToken = refreshTokenService.issue(userDetails.getUserId());
+                        return ResponseEntity.ok(new JwtAuthenticationResponse(
+                                jwt, refreshToken, tokenProvider.getExpirationSeconds()));
+                    }, authenticationExecutor)
+                    .exceptionallyAsync(failure -> {
+                        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                                ? failure.getCause()
+                                : failure;
+                        if (!(cause instanceof AuthenticationException))
+                        {
+                            throw new CompletionException(cause);
+                        }
+                        return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                                .body(new ApiResponse(false, "Invalid email or password"));
+                    }, authenticationExecutor);
+        }
+        catch (RejectedExecutionException exception)
+        {
+            loginAttemptLimiter.release(email, clientIp);
+            return CompletableFuture.completedFuture(serverBusy());
+        }
+    }
+
+    // Runs on the hashing pool and settles the limiter slot with the outcome of the check
+    private Authentication checkPassword(String email, String password, String clientIp)
+    {
+        try
+        {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(email, password));
+            loginAttemptLimiter.recordSuccess(email, clientIp);
+            return authentication;
+        }
+        catch (AuthenticationException exception)
+        {
+            loginAttemptLimiter.recordFailure(email, clientIp);
+            throw exception;
+        }
+        catch (RuntimeException exception)
+        {
+            loginAttemptLimiter.release(email, clientIp);
+            throw exception;
+        }
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token.
+     * The presented refresh token cannot be used again.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@Valid @RequestBody RefreshTokenRequest refreshTokenRequest)
+    {
+        RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshTokenRequest.getRefreshToken());
+        if (rotation == null)
+        {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ApiResponse(false, "Invalid or expired refresh token"));
+        }
+
+        UserModel user;
+        try
+        {
+            user = userService.getUserById(rotation.userId());
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(new ApiResponse(false, "Invalid or expired refresh token"));
+        }
+
+        String jwt = tokenProvider.generateToken(user.getId(), user.getEmail());
+        return ResponseEntity.ok(new JwtAuthenticationResponse(
+                jwt, rotation.refreshToken(), tokenProvider.getExpirationSeconds()));
+    }
+
+    /**
+     * Revokes the refresh token's family and the access token the request was made with.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(
+            @RequestBody(required = false) RefreshTokenRequest refreshTokenRequest,
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization)
     {
-        Authentication authentication;
-        authentication = authenticationManager.authenticate
-                (
-                new UsernamePasswordAuthenticationToken
-                        (loginRequest.getEmail(),
-                        loginRequest.getPassword()
-                )
-        );
-
-        CustomUserDetails userDetails = (CustomUserDetails) authentication.getPrincipal();
-        String jwt = tokenProvider.generateToken(userDetails);
-
-        return ResponseEntity.ok(new JwtAuthenticationResponse(jwt));
+        if (refreshTokenRequest != null && refreshTokenRequest.getRefreshToken() != null)
+        {
+            refreshTokenService.revoke(refreshTokenRequest.getRefreshToken());
+        }
+
+        if (authorization != null && authorization.startsWith("Bearer "))
+        {
+            VerifiedToken token = tokenProvider.verify(authorization.substring(7));
+            if (token != null)
+            {
+                refreshTokenService.revokeAccessToken(token);
+            }
+        }
+
+        return ResponseEntity.ok(new ApiResponse(true, "Logged out"));
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> register(@Valid @RequestBody SignUpRequest signUpRequest) {
+    public CompletableFuture<ResponseEntity<?>> register(@Valid @RequestBody SignUpRequest signUpRequest) {
         if (userService.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
+            return CompletableFuture.completedFuture(ResponseEntity
                     .badRequest()
-                    .body(new ApiResponse(false, "Email is already taken!"));
+                    .body(new ApiResponse(false, "Email is already taken!")));
         }
 
-        UserModel user = new UserModel();
-        user.setEmail(signUpRequest.getEmail());
-        user.setPassword(passwordEncoder.encode(signUpRequest.getPassword()));
-        user.setFirstName(signUpRequest.getFirstName());
-        user.setLastName(signUpRequest.getLastName());
-        user.setEmailVerified(false);
-
-        // Generate verification token
-        String verificationToken = UUID.randomUUID().toString();
-        user.setEmailVerificationToken(verificationToken);
-
-        userService.createUser(user);
+        CompletableFuture<String> encodedPassword;
+        try {
+            encodedPassword = passwordHashingExecutor.submit(() -> passwordEncoder.encode(signUpRequest.getPassword()));
+        } catch (RejectedExecutionException exception) {
+            return CompletableFuture.completedFuture(serverBusy());
+        }
 
-        // In a real application, you would send an email here with the verification link
-        // For testing, return the token in the response
-        return ResponseEntity.ok(new ApiResponse(true,
-                "User registered successfully. Verification token: " + verificationToken));
+        return encodedPassword.<ResponseEntity<?>>thenApplyAsync(password -> {
+            UserModel user = new UserModel();
+            user.setEmail(signUpRequest.getEmail());
+            user.setPassword(password);
+            user.setFirstName(signUpRequest.getFirstName());
+            user.setLastName(signUpRequest.getLastName());
+            user.setEmailVerified(false);
+
+            // Generate verification token
+            String verificationToken = UUID.randomUUID().toString();
+            user.setEmailVerificationToken(verificationToken);
+
+            userService.createUser(user);
+
+            // In a real application, you would send an email here with the verification link
+            // For testing, return the token in the response
+            return ResponseEntity.ok(new ApiResponse(true,
+                    "User registered successfully. Verification token: " + verificationToken));
+        }, authenticationExecutor);
     }
 
     @PostMapping("/verify-email")
@@ -92,4 +228,16 @@ public class AuthenticationController
         }
         return ResponseEntity.badRequest().body(new ApiResponse(false, "Invalid verification token"));
     }
+
+    private ResponseEntity<?> serverBusy()
+    {
+        return rejected(HttpStatus.SERVICE_UNAVAILABLE, 1, "Server is busy, try again shortly");
+    }
+
+    private ResponseEntity<?> rejected(HttpStatus status, long retryAfterSeconds, String message)
+    {
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(new ApiResponse(false, message));
+    }
 }
\ No newline at end of file
@@ -14,10 +14,27 @@ import java.util.Collections;
 
 
 
+/**
+ * Principal of an authenticated user.
+ * Built from the user document at login and from the token claims afterwards,
+ * in which case there is no password.
+ */
 @RequiredArgsConstructor
 public class CustomUserDetails implements UserDetails
 {
-    private final UserModel user;
+    private final String userId;
+    private final String email;
+    private final String password;
+
+    public CustomUserDetails(UserModel user)
+    {
+        this(user.getId(), user.getEmail(), user.getPassword());
+    }
+
+    public static CustomUserDetails fromToken(VerifiedToken token)
+    {
+        return new CustomUserDetails(token.userId(), token.email(), null);
+    }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities()
@@ -28,18 +45,18 @@ public class CustomUserDetails implements UserDetails
     @Override
     public String getPassword()
     {
-        return user.getPassword();
+        return password;
     }
 
     @Override
     public String getUsername()
     {
-        return user.getEmail();
+        return email;
     }
 
     public String getUserId()
     {
-        return user.getId();
+        return userId;
     }
 
     @Override
@@ -66,4 +83,4 @@ public class CustomUserDetails implements UserDetails
         //return user.isEmailVerified(); //Commented out to bypass verification process during login
         return true;
     }
-}
\ No newline at end of file
+}
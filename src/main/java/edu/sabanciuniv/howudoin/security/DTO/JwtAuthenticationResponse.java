@@ -8,9 +8,14 @@ public class JwtAuthenticationResponse
 {
     private String accessToken;
     private final String tokenType = "Bearer";
+    private String refreshToken;
+    // Access token lifetime in seconds
+    private long expiresIn;
 
-    public JwtAuthenticationResponse(String accessToken)
+    public JwtAuthenticationResponse(String accessToken, String refreshToken, long expiresIn)
     {
         this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,13 @@
+// RefreshTokenRequest.java
+package edu.sabanciuniv.howudoin.security.DTO;
+
+import jakarta.validation.constraints.NotBlank;
+
+import lombok.Data;
+
+@Data
+public class RefreshTokenRequest
+{
+    @NotBlank(message = "Refresh token is required")
+    private String refreshToken;
+}
@@ -0,0 +1,33 @@
+package edu.sabanciuniv.howudoin.security;
+
+
+import org.springframework.http.server.ServerHttpRequest;
+
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.security.Principal;
+import java.util.Map;
+
+
+/**
+ * Uses the user id verified by JwtHandshakeInterceptor as the session principal,
+ * so convertAndSendToUser(userId, ...) reaches every session of that user.
+ */
+public class JwtHandshakeHandler extends DefaultHandshakeHandler
+{
+    @Override
+    protected Principal determineUser(
+            ServerHttpRequest request,
+            WebSocketHandler wsHandler,
+            Map<String, Object> attributes)
+    {
+        Object userId = attributes.get(JwtHandshakeInterceptor.USER_ID_ATTRIBUTE);
+        if (userId == null)
+        {
+            return null;
+        }
+        String name = userId.toString();
+        return () -> name;
+    }
+}
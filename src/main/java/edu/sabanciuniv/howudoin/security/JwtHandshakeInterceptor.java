@@ -0,0 +1,77 @@
+package edu.sabanciuniv.howudoin.security;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+
+import org.springframework.stereotype.Component;
+
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+
+/**
+ * Verifies the JWT once, when the WebSocket is opened.
+ * The user id is stored in the session attributes and picked up by
+ * JwtHandshakeHandler to become the STOMP session principal.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JwtHandshakeInterceptor implements HandshakeInterceptor
+{
+    public static final String USER_ID_ATTRIBUTE = "userId";
+
+    private final JwtWebTokenProvider tokenProvider;
+
+    @Override
+    public boolean beforeHandshake(
+            ServerHttpRequest request,
+            ServerHttpResponse response,
+            WebSocketHandler wsHandler,
+            Map<String, Object> attributes)
+    {
+        String jwt = extractJwtFromRequest(request);
+        VerifiedToken token = jwt != null ? tokenProvider.verify(jwt) : null;
+
+        if (token == null)
+        {
+            log.debug("Rejected WebSocket handshake without a valid token");
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+
+        attributes.put(USER_ID_ATTRIBUTE, token.userId());
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(
+            ServerHttpRequest request,
+            ServerHttpResponse response,
+            WebSocketHandler wsHandler,
+            Exception exception)
+    {
+    }
+
+    // Browsers cannot set headers on a WebSocket upgrade, so the token may also come as a query parameter
+    private String extractJwtFromRequest(ServerHttpRequest request)
+    {
+        String bearerToken = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (bearerToken != null && bearerToken.startsWith("Bearer "))
+        {
+            return bearerToken.substring(7);
+        }
+        return UriComponentsBuilder.fromUri(request.getURI())
+                .build()
+                .getQueryParams()
+                .getFirst("access_token");
+    }
+}
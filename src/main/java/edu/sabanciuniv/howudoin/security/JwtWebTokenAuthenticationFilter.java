@@ -1,6 +1,8 @@
 package edu.sabanciuniv.howudoin.security;
 
 
+import edu.sabanciuniv.howudoin.users.UserStatusCache;
+
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -10,7 +12,6 @@ import lombok.RequiredArgsConstructor;
 
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 
 import org.springframework.stereotype.Component;
@@ -26,7 +27,7 @@ public class JwtWebTokenAuthenticationFilter extends OncePerRequestFilter
 {
 
     private final JwtWebTokenProvider tokenProvider;
-    private final UserDetailsServiceImplementation userDetailsService;
+    private final UserStatusCache userStatusCache;
 
     @Override
     protected void doFilterInternal(
@@ -38,9 +39,11 @@ public class JwtWebTokenAuthenticationFilter extends OncePerRequestFilter
         try {
             String jwt = extractJwtFromRequest(request);
 
-            if (jwt != null && tokenProvider.validateToken(jwt)) {
-                String userId = tokenProvider.getUserIdFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserById(userId);
+            VerifiedToken token = jwt != null ? tokenProvider.verify(jwt) : null;
+
+            // The principal comes from the claims; only account existence is checked, through a short-lived cache
+            if (token != null && userStatusCache.isActive(token.userId())) {
+                CustomUserDetails userDetails = CustomUserDetails.fromToken(token);
 
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(
@@ -1,120 +1,158 @@
 package edu.sabanciuniv.howudoin.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Issues and verifies short-lived HS384 access tokens.
+ * The signing key and parser are built once. Verified tokens are kept in a
+ * bounded cache until they expire, so a client repeating the same token only
+ * pays for the HMAC check on its first request. Revocation is checked on
+ * every call against the in-memory TokenRevocationList.
+ */
 @Slf4j
 @Component
 public class JwtWebTokenProvider {
 
-    @Value("${jwt.secret}")
-    private String jwtSecret;
+    private final SecretKey signingKey;
+    private final JwtParser parser;
+    private final long jwtExpiration;
+    private final Cache<String, VerifiedToken> verifiedTokens;
+    private final TokenRevocationList revocationList;
 
-    @Value("${jwt.expiration}")
-    private long jwtExpiration;
-
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-        System.out.println("Secret key length: " + keyBytes.length + " bytes");
-        return Keys.hmacShaKeyFor(keyBytes);
+    public JwtWebTokenProvider(
+            @Value("${jwt.secret}") String jwtSecret,
+            @Value("${jwt.expiration}") long jwtExpiration,
+            @Value("${jwt.verification-cache.max-size:10000}") long cacheSize,
+            TokenRevocationList revocationList,
+            MeterRegistry meterRegistry) {
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        this.jwtExpiration = jwtExpiration;
+        this.revocationList = revocationList;
+        this.verifiedTokens = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(cacheSize)
+                        .expireAfter(new UntilTokenExpiry())
+                        .recordStats()
+                        .<String, VerifiedToken>build(),
+                "jwt.verified");
     }
 
     public String generateToken(CustomUserDetails userDetails) {
-        try {
-            Map<String, Object> claims = new HashMap<>();
-            claims.put("userId", userDetails.getUserId());
-            claims.put("email", userDetails.getUsername());
-
-            Date now = new Date();
-            Date expiryDate = new Date(now.getTime() + jwtExpiration);
-
-            System.out.println("Generating token for user: " + userDetails.getUsername());
-            System.out.println("Claims: " + claims);
+        return generateToken(userDetails.getUserId(), userDetails.getUsername());
+    }
 
-            String token = Jwts.builder()
-                    .setClaims(claims)
-                    .setSubject(userDetails.getUserId())
-                    .setIssuedAt(now)
-                    .setExpiration(expiryDate)
-                    .signWith(getSigningKey(), SignatureAlgorithm.HS384)
-                    .compact();
+    public String generateToken(String userId, String email) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("userId", userId);
+        claims.put("email", email);
 
-            System.out.println("Generated token: " + token);
-            // Verify the token immediately after generation
-            boolean isValid = validateToken(token);
-            System.out.println("Token valid after generation: " + isValid);
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + jwtExpiration);
 
-            return token;
-        } catch (Exception e) {
-            System.out.println("Error generating token: " + e.getMessage());
-            e.printStackTrace();
-            throw e;
-        }
+        log.debug("Generating token for user {}", userId);
+        return Jwts.builder()
+                .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
+                .setSubject(userId)
+                .setIssuedAt(now)
+                .setExpiration(expiryDate)
+                .signWith(signingKey, SignatureAlgorithm.HS384)
+                .compact();
     }
 
-    public String getUserIdFromToken(String token) {
-        try {
-            System.out.println("Attempting to extract user ID from token");
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+    /**
+     * Access token lifetime in seconds.
+     */
+    public long getExpirationSeconds() {
+        return jwtExpiration / 1000;
+    }
 
-            String userId = claims.getSubject();
-            System.out.println("Extracted userId: " + userId);
-            return userId;
-        } catch (Exception e) {
-            System.out.println("Error extracting user ID from token: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+    /**
+     * Verifies the token and returns its claims, or null when it is invalid, expired or revoked.
+     * The cache is keyed by the whole token, so a hit means this exact header,
+     * payload and signature were already verified.
+     */
+    public VerifiedToken verify(String token) {
+        VerifiedToken verified = verifiedTokens.getIfPresent(token);
+        if (verified != null) {
+            // Expiry eviction is lazy, so the deadline is still checked on a hit
+            if (verified.isExpired(Instant.now())) {
+                return null;
+            }
+        } else {
+            verified = parse(token);
+            if (verified == null) {
+                return null;
+            }
+            verifiedTokens.put(token, verified);
         }
+        return revocationList.isRevoked(verified.tokenId()) ? null : verified;
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Verifies the signature and expiry without consulting the cache.
+     */
+    VerifiedToken parse(String token) {
         try {
-            System.out.println("Validating token: " + token);
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            System.out.println("Token validation successful");
-            return true;
-        } catch (SecurityException | MalformedJwtException e) {
-            System.out.println("Invalid JWT signature: " + e.getMessage());
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (claims.getSubject() == null || claims.getExpiration() == null) {
+                log.debug("JWT without subject or expiration");
+                return null;
+            }
+            return new VerifiedToken(
+                    claims.getSubject(),
+                    claims.get("email", String.class),
+                    claims.getId(),
+                    claims.getExpiration().toInstant());
         } catch (ExpiredJwtException e) {
-            System.out.println("Expired JWT token: " + e.getMessage());
+            log.debug("Expired JWT token: {}", e.getMessage());
+        } catch (SecurityException | MalformedJwtException e) {
+            log.debug("Invalid JWT signature: {}", e.getMessage());
         } catch (UnsupportedJwtException e) {
-            System.out.println("Unsupported JWT token: " + e.getMessage());
+            log.debug("Unsupported JWT token: {}", e.getMessage());
         } catch (IllegalArgumentException e) {
-            System.out.println("JWT claims string is empty: " + e.getMessage());
-        } catch (Exception e) {
-            System.out.println("JWT validation error: " + e.getMessage());
-            e.printStackTrace();
+            log.debug("JWT claims string is empty: {}", e.getMessage());
+        } catch (JwtException e) {
+            log.debug("JWT validation error: {}", e.getMessage());
         }
-        return false;
+        return null;
     }
 
-    // Helper method to decode token without verification (for debugging)
-    public void debugToken(String token) {
-        try {
-            String[] parts = token.split("\\.");
-            if (parts.length == 3) {
-                System.out.println("Token structure:");
-                System.out.println("Header: " + new String(java.util.Base64.getDecoder().decode(parts[0])));
-                System.out.println("Payload: " + new String(java.util.Base64.getDecoder().decode(parts[1])));
-                System.out.println("Signature present: " + !parts[2].isEmpty());
-            }
-        } catch (Exception e) {
-            System.out.println("Error debugging token: " + e.getMessage());
+    /**
+     * Keeps each verified token exactly until its own exp claim.
+     */
+    private static final class UntilTokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String token, VerifiedToken verified, long currentTime) {
+            return Math.max(0, Duration.between(Instant.now(), verified.expiresAt()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, verified, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, VerifiedToken verified, long currentTime, long currentDuration) {
+            return currentDuration;
         }
     }
-}
\ No newline at end of file
+}
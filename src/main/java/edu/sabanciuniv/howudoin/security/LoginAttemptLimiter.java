@@ -0,0 +1,163 @@
+package edu.sabanciuniv.howudoin.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Locale;
+
+/**
+ * Sliding-window counters of failed logins per account and per client IP.
+ * Checked before any password is hashed, so repeated bad attempts are turned
+ * away without spending BCrypt time on them. Admission reserves a slot for the
+ * attempt, so a burst of concurrent attempts cannot all pass the check while
+ * their hashes are still running; the outcome later turns the slot into a
+ * failure or frees it.
+ */
+@Component
+public class LoginAttemptLimiter {
+    // Suggested wait when the limit is only reached by attempts still being checked
+    private static final long IN_FLIGHT_RETRY_MILLIS = 1000;
+
+    private final long windowMillis;
+    private final int maxFailuresPerAccount;
+    private final int maxFailuresPerIp;
+    private final Cache<String, FailureWindow> accounts;
+    private final Cache<String, FailureWindow> addresses;
+    private final Counter blocked;
+
+    public LoginAttemptLimiter(
+            MeterRegistry meterRegistry,
+            @Value("${app.login-limiter.window-seconds:900}") long windowSeconds,
+            @Value("${app.login-limiter.max-failures-per-account:5}") int maxFailuresPerAccount,
+            @Value("${app.login-limiter.max-failures-per-ip:20}") int maxFailuresPerIp) {
+        this.windowMillis = Duration.ofSeconds(windowSeconds).toMillis();
+        this.maxFailuresPerAccount = maxFailuresPerAccount;
+        this.maxFailuresPerIp = maxFailuresPerIp;
+        this.accounts = newWindowCache(windowSeconds);
+        this.addresses = newWindowCache(windowSeconds);
+        this.blocked = Counter.builder("login.attempts.blocked")
+                .description("Login attempts refused by the failure limiter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserves an attempt for the account and address. Returns 0 when admitted, in which case
+     * exactly one of recordFailure, recordSuccess or release must follow; otherwise the seconds
+     * until they may try again.
+     */
+    public long tryAcquire(String email, String ip) {
+        long now = System.currentTimeMillis();
+        FailureWindow account = accounts.get(accountKey(email), key -> new FailureWindow());
+        long waitMillis = account.tryReserve(now, windowMillis, maxFailuresPerAccount);
+        if (waitMillis == 0) {
+            waitMillis = addresses.get(ip, key -> new FailureWindow()).tryReserve(now, windowMillis, maxFailuresPerIp);
+            if (waitMillis > 0) {
+                account.release();
+            }
+        }
+        if (waitMillis == 0) {
+            return 0;
+        }
+        blocked.increment();
+        return (waitMillis + 999) / 1000;
+    }
+
+    /**
+     * Turns the attempt's reservation into a failure.
+     */
+    public void recordFailure(String email, String ip) {
+        long now = System.currentTimeMillis();
+        accounts.get(accountKey(email), key -> new FailureWindow()).fail(now, windowMillis, maxFailuresPerAccount);
+        addresses.get(ip, key -> new FailureWindow()).fail(now, windowMillis, maxFailuresPerIp);
+    }
+
+    /**
+     * A successful login clears the account's failures; the address keeps its history.
+     */
+    public void recordSuccess(String email, String ip) {
+        FailureWindow account = accounts.getIfPresent(accountKey(email));
+        if (account != null) {
+            account.succeed();
+        }
+        release(addresses.getIfPresent(ip));
+    }
+
+    /**
+     * Frees the attempt's reservation when the check could not be made.
+     */
+    public void release(String email, String ip) {
+        release(accounts.getIfPresent(accountKey(email)));
+        release(addresses.getIfPresent(ip));
+    }
+
+    private static void release(FailureWindow window) {
+        if (window != null) {
+            window.release();
+        }
+    }
+
+    private static String accountKey(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Cache<String, FailureWindow> newWindowCache(long windowSeconds) {
+        return Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterAccess(Duration.ofSeconds(windowSeconds))
+                .build();
+    }
+
+    /**
+     * Timestamps of the most recent failures, oldest first, at most maxFailures of them,
+     * and the number of admitted attempts whose outcome is not known yet.
+     */
+    private static final class FailureWindow {
+        private final ArrayDeque<Long> failures = new ArrayDeque<>();
+        private int inFlight;
+
+        // Admitted while failures and running attempts together stay below maxFailures
+        synchronized long tryReserve(long now, long windowMillis, int maxFailures) {
+            evict(now, windowMillis);
+            if (failures.size() + inFlight < maxFailures) {
+                inFlight++;
+                return 0;
+            }
+            if (failures.size() >= maxFailures) {
+                return failures.peekFirst() + windowMillis - now;
+            }
+            return IN_FLIGHT_RETRY_MILLIS;
+        }
+
+        synchronized void fail(long now, long windowMillis, int maxFailures) {
+            release();
+            evict(now, windowMillis);
+            failures.addLast(now);
+            while (failures.size() > maxFailures) {
+                failures.removeFirst();
+            }
+        }
+
+        synchronized void succeed() {
+            release();
+            failures.clear();
+        }
+
+        synchronized void release() {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+        }
+
+        private void evict(long now, long windowMillis) {
+            while (!failures.isEmpty() && failures.peekFirst() <= now - windowMillis) {
+                failures.removeFirst();
+            }
+        }
+    }
+}
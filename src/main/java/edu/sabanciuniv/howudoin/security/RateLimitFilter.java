@@ -0,0 +1,178 @@
+package edu.sabanciuniv.howudoin.security;
+
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import org.springframework.stereotype.Component;
+
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Per-user token buckets for the write endpoints that fan out to Mongo.
+ * Each bucket is a single AtomicLong holding the GCRA "theoretical arrival time",
+ * so admitting a request is one CAS and needs no lock. Buckets live in a
+ * ConcurrentHashMap keyed by user and endpoint class, and are dropped once idle.
+ * Runs after JwtWebTokenAuthenticationFilter; unauthenticated calls are left to Spring Security.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter
+{
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final Map<EndpointClass, Limit> limits = new EnumMap<>(EndpointClass.class);
+    private final Map<EndpointClass, Counter> rejections = new EnumMap<>(EndpointClass.class);
+
+    enum EndpointClass
+    {
+        MESSAGE_SEND("/api/messages/send/*"),
+        GROUP_SEND("/api/groups/*/send"),
+        FRIEND_REQUEST("/api/friends/add/*");
+
+        private final String pattern;
+
+        EndpointClass(String pattern)
+        {
+            this.pattern = pattern;
+        }
+    }
+
+    /**
+     * Sustained rate as the interval between requests, and how many may arrive at once.
+     */
+    private record Limit(long intervalNanos, long burstNanos)
+    {
+        static Limit of(int perMinute, int burst)
+        {
+            long interval = TimeUnit.MINUTES.toNanos(1) / Math.max(1, perMinute);
+            return new Limit(interval, interval * Math.max(1, burst));
+        }
+    }
+
+    public RateLimitFilter(
+            MeterRegistry meterRegistry,
+            @Value("${app.rate-limit.message-send.per-minute:60}") int messagesPerMinute,
+            @Value("${app.rate-limit.message-send.burst:20}") int messageBurst,
+            @Value("${app.rate-limit.group-send.per-minute:60}") int groupMessagesPerMinute,
+            @Value("${app.rate-limit.group-send.burst:20}") int groupMessageBurst,
+            @Value("${app.rate-limit.friend-request.per-minute:10}") int friendRequestsPerMinute,
+            @Value("${app.rate-limit.friend-request.burst:5}") int friendRequestBurst)
+    {
+        limits.put(EndpointClass.MESSAGE_SEND, Limit.of(messagesPerMinute, messageBurst));
+        limits.put(EndpointClass.GROUP_SEND, Limit.of(groupMessagesPerMinute, groupMessageBurst));
+        limits.put(EndpointClass.FRIEND_REQUEST, Limit.of(friendRequestsPerMinute, friendRequestBurst));
+
+        for (EndpointClass endpointClass : EndpointClass.values())
+        {
+            rejections.put(endpointClass, Counter.builder("rate.limit.rejected")
+                    .description("Requests refused by the per-user rate limiter")
+                    .tag("endpoint", endpointClass.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("rate.limit.buckets", buckets, Map::size)
+                .description("Active rate limit buckets")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain) throws ServletException, IOException
+    {
+        EndpointClass endpointClass = classify(request);
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (endpointClass != null
+                && authentication != null
+                && authentication.getPrincipal() instanceof CustomUserDetails userDetails)
+        {
+            long waitNanos = acquire(userDetails.getUserId() + ":" + endpointClass.ordinal(), limits.get(endpointClass));
+            if (waitNanos > 0)
+            {
+                rejections.get(endpointClass).increment();
+                long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getOutputStream().write("{\"error\": \"Too many requests\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Drops buckets that have fully refilled, which behave exactly like a new bucket.
+     * A request racing with the removal can lose its single token, which is harmless.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets()
+    {
+        long now = System.nanoTime();
+        buckets.values().removeIf(theoreticalArrival -> theoreticalArrival.get() - now <= 0);
+    }
+
+    // Generic cell rate algorithm: returns 0 when admitted, otherwise the nanoseconds to wait
+    private long acquire(String key, Limit limit)
+    {
+        AtomicLong theoreticalArrival = buckets.computeIfAbsent(key, k -> new AtomicLong(System.nanoTime()));
+        long now = System.nanoTime();
+        while (true)
+        {
+            long current = theoreticalArrival.get();
+            long next = Math.max(current - now, 0) + now + limit.intervalNanos();
+            long allowedAt = next - limit.burstNanos();
+            if (allowedAt - now > 0)
+            {
+                return allowedAt - now;
+            }
+            if (theoreticalArrival.compareAndSet(current, next))
+            {
+                return 0;
+            }
+        }
+    }
+
+    private EndpointClass classify(HttpServletRequest request)
+    {
+        if (!"POST".equals(request.getMethod()))
+        {
+            return null;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (EndpointClass endpointClass : EndpointClass.values())
+        {
+            if (pathMatcher.match(endpointClass.pattern, path))
+            {
+                return endpointClass;
+            }
+        }
+        return null;
+    }
+}
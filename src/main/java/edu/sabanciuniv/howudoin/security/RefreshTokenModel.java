@@ -0,0 +1,51 @@
+package edu.sabanciuniv.howudoin.security;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+
+/**
+ * One issued refresh token. Only the SHA-256 of the token is stored.
+ * Every refresh consumes the token and issues its successor in the same family;
+ * presenting a consumed token again revokes the whole family.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "refresh_tokens")
+public class RefreshTokenModel
+{
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    @Field("token_hash")
+    private String tokenHash;
+
+    @Field("user_id")
+    private String userId;
+
+    // All tokens descending from one login
+    @Indexed
+    @Field("family_id")
+    private String familyId;
+
+    @Field("created_at")
+    private LocalDateTime createdAt;
+
+    // Removed by Mongo once expired
+    @Indexed(expireAfterSeconds = 0)
+    @Field("expires_at")
+    private LocalDateTime expiresAt;
+
+    @Field("used_at")
+    private LocalDateTime usedAt;
+
+    @Field("revoked")
+    private boolean revoked;
+}
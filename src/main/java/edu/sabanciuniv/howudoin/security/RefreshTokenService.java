@@ -0,0 +1,174 @@
+package edu.sabanciuniv.howudoin.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.UUID;
+
+/**
+ * Rotating refresh tokens and revocation of access tokens.
+ * Refresh tokens are opaque random strings; each one can be exchanged once.
+ * Revoked access token ids are stored in revoked_tokens and mirrored into the
+ * in-memory TokenRevocationList of every instance by a periodic sync.
+ */
+@Slf4j
+@Service
+public class RefreshTokenService {
+    // Sync window overlap, so revocations written just before the last sync are not missed
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(5);
+
+    private final MongoTemplate mongoTemplate;
+    private final TokenRevocationList revocationList;
+    private final Duration refreshTokenLifetime;
+    private final SecureRandom random = new SecureRandom();
+
+    // Null until the first full load
+    private volatile LocalDateTime lastSync;
+
+    /**
+     * The user a refresh token belonged to and the token that replaces it.
+     */
+    public record Rotation(String userId, String refreshToken) {
+    }
+
+    public RefreshTokenService(
+            MongoTemplate mongoTemplate,
+            TokenRevocationList revocationList,
+            @Value("${jwt.refresh-expiration:2592000000}") long refreshExpiration) {
+        this.mongoTemplate = mongoTemplate;
+        this.revocationList = revocationList;
+        this.refreshTokenLifetime = Duration.ofMillis(refreshExpiration);
+    }
+
+    @PostConstruct
+    void loadRevocations() {
+        syncRevocations();
+    }
+
+    /**
+     * Starts a new token family, at login.
+     */
+    public String issue(String userId) {
+        return save(userId, UUID.randomUUID().toString(), LocalDateTime.now());
+    }
+
+    /**
+     * Consumes a refresh token and issues its successor, or returns null when the token
+     * is unknown, expired, revoked or already used. Presenting a used token again means
+     * it was copied, so the whole family is revoked.
+     */
+    public Rotation rotate(String refreshToken) {
+        String tokenHash = hash(refreshToken);
+        LocalDateTime now = LocalDateTime.now();
+
+        Query unused = new Query(Criteria.where("tokenHash").is(tokenHash)
+                .and("usedAt").is(null)
+                .and("revoked").is(false)
+                .and("expiresAt").gt(now));
+        RefreshTokenModel consumed = mongoTemplate.findAndModify(
+                unused, new Update().set("usedAt", now), FindAndModifyOptions.options().returnNew(true),
+                RefreshTokenModel.class);
+
+        if (consumed == null) {
+            RefreshTokenModel existing = mongoTemplate.findOne(
+                    new Query(Criteria.where("tokenHash").is(tokenHash)), RefreshTokenModel.class);
+            if (existing != null && existing.getUsedAt() != null && !existing.isRevoked()) {
+                log.warn("Refresh token reused for user {}, revoking its family", existing.getUserId());
+                revokeFamily(existing.getFamilyId());
+            }
+            return null;
+        }
+
+        return new Rotation(consumed.getUserId(), save(consumed.getUserId(), consumed.getFamilyId(), now));
+    }
+
+    /**
+     * Revokes the family of a refresh token, at logout. Unknown tokens are ignored.
+     */
+    public void revoke(String refreshToken) {
+        RefreshTokenModel token = mongoTemplate.findOne(
+                new Query(Criteria.where("tokenHash").is(hash(refreshToken))), RefreshTokenModel.class);
+        if (token != null) {
+            revokeFamily(token.getFamilyId());
+        }
+    }
+
+    /**
+     * Revokes an access token until it expires, here and, after the next sync, on every instance.
+     */
+    public void revokeAccessToken(VerifiedToken token) {
+        if (token.tokenId() == null) {
+            return;
+        }
+        revocationList.revoke(token.tokenId(), token.expiresAt());
+        mongoTemplate.save(new RevokedTokenModel(
+                token.tokenId(),
+                token.userId(),
+                LocalDateTime.now(),
+                LocalDateTime.ofInstant(token.expiresAt(), ZoneId.systemDefault())));
+    }
+
+    @Scheduled(fixedDelayString = "${app.token-revocation.sync-interval-ms:10000}")
+    public void syncRevocations() {
+        LocalDateTime syncStart = LocalDateTime.now();
+
+        Criteria criteria = Criteria.where("expiresAt").gt(syncStart);
+        if (lastSync != null) {
+            criteria.and("revokedAt").gt(lastSync.minus(SYNC_OVERLAP));
+        }
+        Query query = new Query(criteria);
+        for (RevokedTokenModel revoked : mongoTemplate.find(query, RevokedTokenModel.class)) {
+            revocationList.revoke(revoked.getId(), revoked.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant());
+        }
+        revocationList.purgeExpired();
+        lastSync = syncStart;
+    }
+
+    private void revokeFamily(String familyId) {
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("familyId").is(familyId)),
+                new Update().set("revoked", true),
+                RefreshTokenModel.class);
+    }
+
+    private String save(String userId, String familyId, LocalDateTime now) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String refreshToken = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+        RefreshTokenModel token = new RefreshTokenModel();
+        token.setTokenHash(hash(refreshToken));
+        token.setUserId(userId);
+        token.setFamilyId(familyId);
+        token.setCreatedAt(now);
+        token.setExpiresAt(now.plus(refreshTokenLifetime));
+        mongoTemplate.insert(token);
+        return refreshToken;
+    }
+
+    private static String hash(String refreshToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(refreshToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 not available", exception);
+        }
+    }
+}
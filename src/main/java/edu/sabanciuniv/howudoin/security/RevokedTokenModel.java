@@ -0,0 +1,36 @@
+package edu.sabanciuniv.howudoin.security;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+import java.time.LocalDateTime;
+
+/**
+ * An access token revoked before its expiry, keyed by its jti.
+ * Shared between instances, which load it into their TokenRevocationList.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "revoked_tokens")
+public class RevokedTokenModel
+{
+    // Same as the token's jti
+    @Id
+    private String id;
+
+    @Field("user_id")
+    private String userId;
+
+    @Indexed
+    @Field("revoked_at")
+    private LocalDateTime revokedAt;
+
+    @Indexed(expireAfterSeconds = 0)
+    @Field("expires_at")
+    private LocalDateTime expiresAt;
+}
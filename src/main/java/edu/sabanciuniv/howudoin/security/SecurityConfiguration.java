@@ -32,6 +32,7 @@ public class SecurityConfiguration
 {
 
     private final JwtWebTokenAuthenticationFilter jwtAuthFilter;
+    private final RateLimitFilter rateLimitFilter;
     private final UserDetailsServiceImplementation userDetailsService;
 
     @Value("${app.cors.allowed-origins:*}")
@@ -46,6 +47,7 @@ public class SecurityConfiguration
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/api/auth/**").permitAll() // Authentication and registration endpoints
                         .requestMatchers("/error").permitAll() // Error endpoint
+                        .requestMatchers("/ws/**").permitAll() // WebSocket handshake, JWT is checked by JwtHandshakeInterceptor
                         .requestMatchers("/api/friends/add/**").authenticated() // Explicitly secure friend request endpoint
                         .anyRequest().authenticated() // Secure all other endpoints
                 )
@@ -54,6 +56,7 @@ public class SecurityConfiguration
                 )
                 .authenticationProvider(authenticationProvider())
                 .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+                .addFilterAfter(rateLimitFilter, JwtWebTokenAuthenticationFilter.class) // Needs the authenticated user
                 .exceptionHandling(handling -> handling
                         .authenticationEntryPoint((request, response, authException) -> {
                             response.setContentType(MediaType.APPLICATION_JSON_VALUE);
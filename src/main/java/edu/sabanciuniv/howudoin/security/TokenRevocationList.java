@@ -0,0 +1,119 @@
+package edu.sabanciuniv.howudoin.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Ids (jti) of access tokens revoked before their expiry, checked in memory on every request.
+ * A Bloom filter answers the common "never revoked" case with a few bit probes;
+ * only its positives go to the exact map, which also rules out false positives.
+ * Entries only need to live until the token would have expired anyway, so both
+ * structures stay small and the filter is rebuilt from the live entries on purge.
+ */
+@Component
+public class TokenRevocationList {
+    private final int bits;
+    private final int hashes;
+
+    private final Map<String, Instant> revokedUntil = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray filter;
+
+    public TokenRevocationList(
+            @Value("${app.token-revocation.expected-revocations:100000}") int expectedRevocations,
+            @Value("${app.token-revocation.false-positive-rate:0.01}") double falsePositiveRate) {
+        // Standard sizing: m = -n ln p / (ln 2)^2, k = m/n ln 2
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedRevocations * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bits = (int) Math.max(64, Math.min(optimalBits, Integer.MAX_VALUE - 63));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedRevocations * ln2));
+        this.filter = new AtomicLongArray((bits + 63) / 64);
+    }
+
+    public void revoke(String tokenId, Instant expiresAt) {
+        if (tokenId == null) {
+            return;
+        }
+        // Map first: a concurrent rebuild re-adds everything in the map to the new filter
+        revokedUntil.merge(tokenId, expiresAt, (a, b) -> a.isAfter(b) ? a : b);
+        add(filter, tokenId);
+    }
+
+    public boolean isRevoked(String tokenId) {
+        if (tokenId == null || !mightContain(filter, tokenId)) {
+            return false;
+        }
+        Instant until = revokedUntil.get(tokenId);
+        return until != null && until.isAfter(Instant.now());
+    }
+
+    /**
+     * Drops revocations of tokens that have expired by now and rebuilds the filter without them.
+     */
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        revokedUntil.values().removeIf(until -> !until.isAfter(now));
+
+        AtomicLongArray rebuilt = new AtomicLongArray(filter.length());
+        revokedUntil.keySet().forEach(tokenId -> add(rebuilt, tokenId));
+        filter = rebuilt;
+        // Revocations that landed in the old filter during the rebuild
+        revokedUntil.keySet().forEach(tokenId -> add(rebuilt, tokenId));
+    }
+
+    public int size() {
+        return revokedUntil.size();
+    }
+
+    private void add(AtomicLongArray target, String tokenId) {
+        long hash = hash64(tokenId);
+        long step = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) Long.remainderUnsigned(hash + i * step, bits);
+            long mask = 1L << (bit & 63);
+            int word = bit >>> 6;
+            long current;
+            do {
+                current = target.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!target.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    private boolean mightContain(AtomicLongArray target, String tokenId) {
+        long hash = hash64(tokenId);
+        long step = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (int) Long.remainderUnsigned(hash + i * step, bits);
+            if ((target.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a over the UTF-16 code units, finished with a 64-bit mixer
+    private static long hash64(String value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
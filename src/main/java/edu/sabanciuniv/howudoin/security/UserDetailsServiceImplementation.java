@@ -30,11 +30,4 @@ public class UserDetailsServiceImplementation implements UserDetailsService
         }
         return new CustomUserDetails(user);
     }
-
-    public UserDetails loadUserById(String id) throws UsernameNotFoundException
-    {
-        UserModel user = userRepository.findById(id)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + id));
-        return new CustomUserDetails(user);
-    }
 }
\ No newline at end of file
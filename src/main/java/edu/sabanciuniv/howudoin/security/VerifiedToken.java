@@ -0,0 +1,14 @@
+package edu.sabanciuniv.howudoin.security;
+
+import java.time.Instant;
+
+/**
+ * Claims of a JWT whose signature and expiry have been checked.
+ * tokenId is the jti used for revocation; tokens issued before it existed have none.
+ */
+public record VerifiedToken(String userId, String email, String tokenId, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+}
@@ -0,0 +1,415 @@
+package edu.sabanciuniv.howudoin.users;
+
+import edu.sabanciuniv.howudoin.deletion.DeletionJobModel;
+import edu.sabanciuniv.howudoin.deletion.DeletionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+/**
+ * In-memory copy of every user's friend connections.
+ * User ids are mapped to dense ints and each user keeps a sorted int[] of
+ * connected users with a parallel byte[] of FriendStatus ordinals, so lookups
+ * are a hash probe plus a binary search and allocate nothing.
+ *
+ * Adjacency rows are copy-on-write: readers never lock, writers are serialized
+ * and publish a new row. Built from the users collection at startup and kept
+ * current by UserService. A user created on another instance is read from Mongo
+ * on its first miss; users deleted elsewhere are dropped once DeletionService sees their job.
+ */
+@Slf4j
+@Component
+public class FriendGraphIndex {
+    private static final UserModel.FriendStatus[] STATUSES = UserModel.FriendStatus.values();
+    private static final byte ACCEPTED = (byte) UserModel.FriendStatus.ACCEPTED.ordinal();
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final DeletionService deletionService;
+    private final Counter friendChecks;
+    private final Counter notFriendChecks;
+
+    private final Map<String, Integer> indexById = new ConcurrentHashMap<>();
+    private volatile String[] idByIndex = new String[INITIAL_CAPACITY];
+    private volatile AtomicReferenceArray<Adjacency> adjacency = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private volatile int nextIndex;
+
+    /**
+     * Connections of one user, sorted by neighbor index.
+     * accepted holds the ACCEPTED subset of neighbors, also sorted.
+     */
+    private record Adjacency(int[] neighbors, byte[] statuses, int[] accepted) {
+        static final Adjacency EMPTY = new Adjacency(new int[0], new byte[0], new int[0]);
+
+        static Adjacency of(int[] neighbors, byte[] statuses) {
+            int count = 0;
+            for (byte status : statuses) {
+                if (status == ACCEPTED) {
+                    count++;
+                }
+            }
+            int[] accepted = new int[count];
+            for (int i = 0, j = 0; i < neighbors.length; i++) {
+                if (statuses[i] == ACCEPTED) {
+                    accepted[j++] = neighbors[i];
+                }
+            }
+            return new Adjacency(neighbors, statuses, accepted);
+        }
+    }
+
+    public FriendGraphIndex(MongoTemplate mongoTemplate, DeletionService deletionService, MeterRegistry meterRegistry) {
+        this.mongoTemplate = mongoTemplate;
+        this.deletionService = deletionService;
+        deletionService.onDeletion(DeletionJobModel.Type.USER, this::removeUser);
+        Gauge.builder("friend.graph.users", indexById, Map::size)
+                .description("Users held in the in-memory friend graph")
+                .register(meterRegistry);
+        // Friendship checks on the message send path, by answer
+        this.friendChecks = Counter.builder("friend.graph.checks")
+                .description("areFriends lookups served from the friend graph")
+                .tag("result", "friends")
+                .register(meterRegistry);
+        this.notFriendChecks = Counter.builder("friend.graph.checks")
+                .description("areFriends lookups served from the friend graph")
+                .tag("result", "not_friends")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void load() {
+        Query query = new Query();
+        query.fields().include("_id").include("friend_connections.friendId").include("friend_connections.status");
+
+        Map<Integer, List<Document>> connectionsByUser = new HashMap<>();
+        try (Stream<Document> users = mongoTemplate.stream(query, Document.class, "users")) {
+            users.forEach(user -> {
+                int index = addUser(user.get("_id").toString());
+                List<Document> connections = user.getList("friend_connections", Document.class);
+                if (connections != null && !connections.isEmpty()) {
+                    connectionsByUser.put(index, connections);
+                }
+            });
+        }
+
+        long edges = 0;
+        for (Map.Entry<Integer, List<Document>> entry : connectionsByUser.entrySet()) {
+            List<int[]> row = new ArrayList<>();
+            for (Document connection : entry.getValue()) {
+                Integer neighbor = indexById.get(connection.getString("friendId"));
+                String status = connection.getString("status");
+                if (neighbor != null && status != null) {
+                    row.add(new int[]{neighbor, UserModel.FriendStatus.valueOf(status).ordinal()});
+                }
+            }
+            adjacency.set(entry.getKey(), buildRow(row));
+            edges += row.size();
+        }
+        log.info("Friend graph loaded: {} users, {} connections", indexById.size(), edges);
+    }
+
+    /**
+     * Registers a user and returns its dense index.
+     */
+    public synchronized int addUser(String userId) {
+        Integer existing = indexById.get(userId);
+        if (existing != null) {
+            return existing;
+        }
+        int index = nextIndex;
+        ensureCapacity(index + 1);
+        idByIndex[index] = userId;
+        adjacency.set(index, Adjacency.EMPTY);
+        indexById.put(userId, index);
+        // Published last, so readers below the bound always find a slot
+        nextIndex = index + 1;
+        return index;
+    }
+
+    /**
+     * Removes a user and every connection pointing at it.
+     */
+    public synchronized void removeUser(String userId) {
+        Integer index = indexById.remove(userId);
+        if (index == null) {
+            return;
+        }
+        Adjacency row = adjacency.get(index);
+        for (int neighbor : row.neighbors()) {
+            adjacency.set(neighbor, without(adjacency.get(neighbor), index));
+        }
+        adjacency.set(index, null);
+    }
+
+    /**
+     * Sets the status of userId's connection to friendId, adding it if missing.
+     */
+    public synchronized void setStatus(String userId, String friendId, UserModel.FriendStatus status) {
+        Integer index = indexById.get(userId);
+        Integer friendIndex = indexById.get(friendId);
+        if (index == null || friendIndex == null) {
+            return;
+        }
+        adjacency.set(index, with(adjacency.get(index), friendIndex, (byte) status.ordinal()));
+    }
+
+    /**
+     * Removes userId's connection to friendId.
+     */
+    public synchronized void removeConnection(String userId, String friendId) {
+        Integer index = indexById.get(userId);
+        Integer friendIndex = indexById.get(friendId);
+        if (index == null || friendIndex == null) {
+            return;
+        }
+        adjacency.set(index, without(adjacency.get(index), friendIndex));
+    }
+
+    public boolean contains(String userId) {
+        return resolve(userId) != null;
+    }
+
+    /**
+     * Status of userId's connection to friendId, or null when there is none.
+     */
+    public UserModel.FriendStatus getStatus(String userId, String friendId) {
+        Adjacency row = rowOf(userId);
+        Integer friendIndex = resolve(friendId);
+        if (row == null || friendIndex == null) {
+            return null;
+        }
+        int position = Arrays.binarySearch(row.neighbors(), friendIndex);
+        return position < 0 ? null : STATUSES[row.statuses()[position]];
+    }
+
+    public boolean areFriends(String userId, String friendId) {
+        boolean friends = acceptedConnection(userId, friendId);
+        (friends ? friendChecks : notFriendChecks).increment();
+        return friends;
+    }
+
+    private boolean acceptedConnection(String userId, String friendId) {
+        Adjacency row = rowOf(userId);
+        Integer friendIndex = resolve(friendId);
+        if (row == null || friendIndex == null) {
+            return false;
+        }
+        int position = Arrays.binarySearch(row.neighbors(), friendIndex);
+        return position >= 0 && row.statuses()[position] == ACCEPTED;
+    }
+
+    /**
+     * Number of accepted friends, or 0 for an unknown user.
+     */
+    public int friendCount(String userId) {
+        Adjacency row = rowOf(userId);
+        return row == null ? 0 : row.accepted().length;
+    }
+
+    /**
+     * Ids of the user's accepted friends.
+     */
+    public List<String> acceptedFriendIds(String userId) {
+        Adjacency row = rowOf(userId);
+        if (row == null) {
+            return List.of();
+        }
+        String[] ids = idByIndex;
+        List<String> friends = new ArrayList<>(row.accepted().length);
+        for (int friend : row.accepted()) {
+            friends.add(ids[friend]);
+        }
+        return friends;
+    }
+
+    /**
+     * Number of accepted friends two users have in common. Allocation-free.
+     */
+    public int mutualFriendCount(String userId1, String userId2) {
+        Adjacency row1 = rowOf(userId1);
+        Adjacency row2 = rowOf(userId2);
+        if (row1 == null || row2 == null) {
+            return 0;
+        }
+        return SortedIntSets.intersectionSize(row1.accepted(), row2.accepted());
+    }
+
+    /**
+     * Ids of the accepted friends two users have in common.
+     */
+    public List<String> mutualFriendIds(String userId1, String userId2) {
+        Adjacency row1 = rowOf(userId1);
+        Adjacency row2 = rowOf(userId2);
+        if (row1 == null || row2 == null) {
+            return List.of();
+        }
+        int[] mutual = SortedIntSets.intersection(row1.accepted(), row2.accepted());
+        String[] ids = idByIndex;
+        List<String> mutualIds = new ArrayList<>(mutual.length);
+        for (int friend : mutual) {
+            mutualIds.add(ids[friend]);
+        }
+        return mutualIds;
+    }
+
+    // Dense-index access for graph algorithms in this package
+
+    /**
+     * Dense index of a user, or -1 when unknown.
+     */
+    int indexOf(String userId) {
+        Integer index = indexById.get(userId);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * User id at a dense index, or null when that user was removed.
+     */
+    String idAt(int index) {
+        String userId = idByIndex[index];
+        return userId != null && indexById.containsKey(userId) ? userId : null;
+    }
+
+    /**
+     * Upper bound (exclusive) of assigned dense indexes.
+     */
+    int indexBound() {
+        return nextIndex;
+    }
+
+    /**
+     * Sorted accepted friends of a user. Shared with the index, callers must not modify it.
+     */
+    int[] acceptedFriends(int index) {
+        Adjacency row = adjacency.get(index);
+        return row == null ? Adjacency.EMPTY.accepted() : row.accepted();
+    }
+
+    /**
+     * Whether index has a connection of any status to other.
+     */
+    boolean isConnected(int index, int other) {
+        Adjacency row = adjacency.get(index);
+        return row != null && Arrays.binarySearch(row.neighbors(), other) >= 0;
+    }
+
+    private Adjacency rowOf(String userId) {
+        Integer index = resolve(userId);
+        return index == null ? null : adjacency.get(index);
+    }
+
+    // Dense index of a user, reading a user created on another instance on the first miss
+    private Integer resolve(String userId) {
+        Integer index = indexById.get(userId);
+        return index != null || userId == null ? index : loadUser(userId);
+    }
+
+    private Integer loadUser(String userId) {
+        if (deletionService.isPending(DeletionJobModel.Type.USER, userId)) {
+            return null;
+        }
+        Query query = new Query(Criteria.where("id").is(userId));
+        query.fields().include("friendConnections");
+        UserModel user = mongoTemplate.findOne(query, UserModel.class);
+        if (user == null) {
+            return null;
+        }
+        int index = addUser(userId);
+        if (user.getFriendConnections() != null) {
+            for (UserModel.FriendConnection connection : user.getFriendConnections()) {
+                if (connection.getStatus() != null) {
+                    setStatus(userId, connection.getFriendId(), connection.getStatus());
+                }
+            }
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int required) {
+        AtomicReferenceArray<Adjacency> current = adjacency;
+        if (required <= current.length()) {
+            return;
+        }
+        int capacity = Math.max(required, current.length() * 2);
+        AtomicReferenceArray<Adjacency> grown = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        idByIndex = Arrays.copyOf(idByIndex, capacity);
+        adjacency = grown;
+    }
+
+    private static Adjacency buildRow(List<int[]> connections) {
+        connections.sort((a, b) -> Integer.compare(a[0], b[0]));
+        int[] neighbors = new int[connections.size()];
+        byte[] statuses = new byte[connections.size()];
+        int size = 0;
+        for (int[] connection : connections) {
+            if (size > 0 && neighbors[size - 1] == connection[0]) {
+                continue;
+            }
+            neighbors[size] = connection[0];
+            statuses[size] = (byte) connection[1];
+            size++;
+        }
+        return Adjacency.of(Arrays.copyOf(neighbors, size), Arrays.copyOf(statuses, size));
+    }
+
+    private static Adjacency with(Adjacency row, int neighbor, byte status) {
+        int position = Arrays.binarySearch(row.neighbors(), neighbor);
+        if (position >= 0) {
+            if (row.statuses()[position] == status) {
+                return row;
+            }
+            byte[] statuses = row.statuses().clone();
+            statuses[position] = status;
+            return Adjacency.of(row.neighbors(), statuses);
+        }
+
+        int insertAt = -position - 1;
+        int length = row.neighbors().length;
+        int[] neighbors = new int[length + 1];
+        byte[] statuses = new byte[length + 1];
+        System.arraycopy(row.neighbors(), 0, neighbors, 0, insertAt);
+        System.arraycopy(row.statuses(), 0, statuses, 0, insertAt);
+        neighbors[insertAt] = neighbor;
+        statuses[insertAt] = status;
+        System.arraycopy(row.neighbors(), insertAt, neighbors, insertAt + 1, length - insertAt);
+        System.arraycopy(row.statuses(), insertAt, statuses, insertAt + 1, length - insertAt);
+        return Adjacency.of(neighbors, statuses);
+    }
+
+    private static Adjacency without(Adjacency row, int neighbor) {
+        if (row == null) {
+            return null;
+        }
+        int position = Arrays.binarySearch(row.neighbors(), neighbor);
+        if (position < 0) {
+            return row;
+        }
+        int length = row.neighbors().length;
+        int[] neighbors = new int[length - 1];
+        byte[] statuses = new byte[length - 1];
+        System.arraycopy(row.neighbors(), 0, neighbors, 0, position);
+        System.arraycopy(row.statuses(), 0, statuses, 0, position);
+        System.arraycopy(row.neighbors(), position + 1, neighbors, position, length - position - 1);
+        System.arraycopy(row.statuses(), position + 1, statuses, position, length - position - 1);
+        return Adjacency.of(neighbors, statuses);
+    }
+}
@@ -0,0 +1,254 @@
+package edu.sabanciuniv.howudoin.users;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Precomputed friends-of-friends suggestions ranked by mutual friend count.
+ * A full pass runs on a fork/join pool after startup; afterwards only the users
+ * whose second-degree neighbourhood changed are recomputed.
+ */
+@Slf4j
+@Component
+public class FriendSuggestionEngine {
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    private final FriendGraphIndex friendGraphIndex;
+    private final ForkJoinPool pool;
+    private final int maxSuggestions;
+
+    private final Map<String, Suggestions> suggestionsByUser = new ConcurrentHashMap<>();
+
+    // Per-thread mutual friend counters, sized to the graph and reset after each user
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Top candidates of one user, best first.
+     */
+    public record Suggestions(String[] userIds, int[] mutualCounts) {
+        static final Suggestions EMPTY = new Suggestions(new String[0], new int[0]);
+    }
+
+    public FriendSuggestionEngine(
+            FriendGraphIndex friendGraphIndex,
+            @Value("${app.friend-suggestions.max-per-user:20}") int maxSuggestions,
+            @Value("${app.friend-suggestions.parallelism:0}") int parallelism) {
+        if (maxSuggestions < 1) {
+            throw new IllegalArgumentException("app.friend-suggestions.max-per-user must be at least 1");
+        }
+        this.friendGraphIndex = friendGraphIndex;
+        this.maxSuggestions = maxSuggestions;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAll() {
+        pool.execute(() -> {
+            long start = System.currentTimeMillis();
+            new SuggestionTask(0, friendGraphIndex.indexBound()).invoke();
+            log.info("Friend suggestions computed for {} users in {} ms",
+                    suggestionsByUser.size(), System.currentTimeMillis() - start);
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Suggestions for a user, computed on demand if the background pass has not reached it yet.
+     */
+    public Suggestions getSuggestions(String userId) {
+        Suggestions suggestions = suggestionsByUser.get(userId);
+        if (suggestions != null) {
+            return suggestions;
+        }
+        int index = friendGraphIndex.indexOf(userId);
+        if (index < 0) {
+            return Suggestions.EMPTY;
+        }
+        // Computed on the caller, not queued behind a background pass on the pool.
+        // Scratch counters are per pool thread, so this one-off gets its own.
+        return compute(index, new Scratch());
+    }
+
+    /**
+     * Recomputes everyone whose friends-of-friends set a change between the two users affects:
+     * the two users and their accepted friends.
+     */
+    public void friendshipChanged(String userId1, String userId2) {
+        pool.execute(() -> {
+            Set<Integer> affected = new LinkedHashSet<>();
+            for (String userId : List.of(userId1, userId2)) {
+                int index = friendGraphIndex.indexOf(userId);
+                if (index >= 0) {
+                    affected.add(index);
+                    for (int friend : friendGraphIndex.acceptedFriends(index)) {
+                        affected.add(friend);
+                    }
+                }
+            }
+            affected.forEach(index -> compute(index, scratch.get()));
+        });
+    }
+
+    /**
+     * Drops a deleted user's own list. Lists naming that user are filtered when served.
+     */
+    public void userRemoved(String userId) {
+        suggestionsByUser.remove(userId);
+    }
+
+    private Suggestions compute(int index, Scratch counters) {
+        String userId = friendGraphIndex.idAt(index);
+        if (userId == null) {
+            return Suggestions.EMPTY;
+        }
+
+        counters.ensureCapacity(friendGraphIndex.indexBound());
+        int[] counts = counters.counts;
+        int touched = 0;
+
+        for (int friend : friendGraphIndex.acceptedFriends(index)) {
+            for (int candidate : friendGraphIndex.acceptedFriends(friend)) {
+                if (candidate == index || candidate >= counts.length) {
+                    continue;
+                }
+                if (counts[candidate]++ == 0) {
+                    counters.touched = grow(counters.touched, touched + 1);
+                    counters.touched[touched++] = candidate;
+                }
+            }
+        }
+
+        // Bounded min-heap of (count, candidate) keeps the best maxSuggestions
+        int[] heapCounts = new int[maxSuggestions];
+        int[] heapCandidates = new int[maxSuggestions];
+        int heapSize = 0;
+        for (int i = 0; i < touched; i++) {
+            int candidate = counters.touched[i];
+            int count = counts[candidate];
+            counts[candidate] = 0;
+            if (friendGraphIndex.isConnected(index, candidate)) {
+                continue;
+            }
+            if (heapSize < maxSuggestions) {
+                heapCounts[heapSize] = count;
+                heapCandidates[heapSize] = candidate;
+                siftUp(heapCounts, heapCandidates, heapSize++);
+            } else if (count > heapCounts[0]) {
+                heapCounts[0] = count;
+                heapCandidates[0] = candidate;
+                siftDown(heapCounts, heapCandidates, heapSize);
+            }
+        }
+
+        String[] userIds = new String[heapSize];
+        int[] mutualCounts = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            mutualCounts[i] = heapCounts[0];
+            userIds[i] = friendGraphIndex.idAt(heapCandidates[0]);
+            heapCounts[0] = heapCounts[i];
+            heapCandidates[0] = heapCandidates[i];
+            siftDown(heapCounts, heapCandidates, i);
+        }
+
+        Suggestions suggestions = new Suggestions(userIds, mutualCounts);
+        suggestionsByUser.put(userId, suggestions);
+        return suggestions;
+    }
+
+    private static void siftUp(int[] counts, int[] candidates, int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(counts, candidates, parent, position);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] counts, int[] candidates, int size) {
+        int position = 0;
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(counts, candidates, smallest, position);
+            position = smallest;
+        }
+    }
+
+    private static void swap(int[] counts, int[] candidates, int i, int j) {
+        int count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        int candidate = candidates[i];
+        candidates[i] = candidates[j];
+        candidates[j] = candidate;
+    }
+
+    private static int[] grow(int[] array, int required) {
+        return required <= array.length ? array : Arrays.copyOf(array, Math.max(required, array.length * 2));
+    }
+
+    private static final class Scratch {
+        int[] counts = new int[0];
+        int[] touched = new int[64];
+
+        void ensureCapacity(int size) {
+            if (counts.length < size) {
+                counts = new int[Math.max(size, counts.length * 2)];
+            }
+        }
+    }
+
+    /**
+     * Splits the dense index range until it is small enough to compute sequentially.
+     */
+    private final class SuggestionTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        SuggestionTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int index = from; index < to; index++) {
+                    FriendSuggestionEngine.this.compute(index, scratch.get());
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SuggestionTask(from, middle), new SuggestionTask(middle, to));
+        }
+    }
+}
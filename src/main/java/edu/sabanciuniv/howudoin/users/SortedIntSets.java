@@ -0,0 +1,94 @@
+package edu.sabanciuniv.howudoin.users;
+
+import java.util.Arrays;
+
+/**
+ * Intersection of strictly increasing int arrays.
+ * Uses a linear merge when both sides are of similar size and galloping
+ * (exponential then binary search) when one side is much smaller.
+ */
+final class SortedIntSets {
+    // Gallop once the larger set is this many times the smaller one
+    private static final int GALLOP_RATIO = 16;
+
+    private SortedIntSets() {
+    }
+
+    /**
+     * Size of the intersection, without allocating.
+     */
+    static int intersectionSize(int[] a, int[] b) {
+        return intersect(a, b, null);
+    }
+
+    /**
+     * The intersection as a new sorted array.
+     */
+    static int[] intersection(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int size = intersect(a, b, out);
+        return Arrays.copyOf(out, size);
+    }
+
+    private static int intersect(int[] a, int[] b, int[] out) {
+        if (a.length > b.length) {
+            int[] swap = a;
+            a = b;
+            b = swap;
+        }
+        if (a.length == 0) {
+            return 0;
+        }
+        return (long) a.length * GALLOP_RATIO < b.length ? gallop(a, b, out) : merge(a, b, out);
+    }
+
+    private static int merge(int[] small, int[] large, int[] out) {
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < small.length && j < large.length) {
+            if (small[i] < large[j]) {
+                i++;
+            } else if (small[i] > large[j]) {
+                j++;
+            } else {
+                if (out != null) {
+                    out[size] = small[i];
+                }
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    private static int gallop(int[] small, int[] large, int[] out) {
+        int low = 0;
+        int size = 0;
+        for (int value : small) {
+            // Find a window [low, high) of the larger array that must contain value
+            int step = 1;
+            int high = low;
+            while (high < large.length && large[high] < value) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int position = Arrays.binarySearch(large, low, Math.min(high + 1, large.length), value);
+            if (position >= 0) {
+                if (out != null) {
+                    out[size] = value;
+                }
+                size++;
+                low = position + 1;
+            } else {
+                low = -position - 1;
+            }
+            if (low >= large.length) {
+                break;
+            }
+        }
+        return size;
+    }
+}
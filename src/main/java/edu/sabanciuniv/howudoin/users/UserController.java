@@ -1,15 +1,20 @@
 package edu.sabanciuniv.howudoin.users;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController
 {
+    // Mutual friends change rarely; let clients reuse answers for profile views
+    private static final CacheControl MUTUAL_FRIENDS_CACHE = CacheControl.maxAge(Duration.ofMinutes(1)).cachePrivate();
+
     private final UserService userService;
 
     @Autowired
@@ -35,6 +40,25 @@ public class UserController
         }
     }
 
+    /**
+     * Search users by name or email.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<UserSearchPage> searchUsers(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size)
+    {
+        try
+        {
+            return new ResponseEntity<>(userService.searchUsers(query, page, size), HttpStatus.OK);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        }
+    }
+
     /**
      * User getter by ID.
      */
@@ -69,6 +93,56 @@ public class UserController
         }
     }
 
+    /**
+     * Count the accepted friends of a user
+     */
+    @GetMapping("/{id}/friends/count")
+    public ResponseEntity<Integer> getFriendCount(@PathVariable String id)
+    {
+        try
+        {
+            return new ResponseEntity<>(userService.getFriendCount(id), HttpStatus.OK);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Get the friends two users have in common
+     */
+    @GetMapping("/{id1}/mutual-friends/{id2}")
+    public ResponseEntity<List<UserModel>> getMutualFriends(@PathVariable String id1, @PathVariable String id2)
+    {
+        try
+        {
+            List<UserModel> mutualFriends = userService.getMutualFriends(id1, id2);
+            return ResponseEntity.ok().cacheControl(MUTUAL_FRIENDS_CACHE).body(mutualFriends);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Count the friends two users have in common
+     */
+    @GetMapping("/{id1}/mutual-friends/{id2}/count")
+    public ResponseEntity<Integer> getMutualFriendCount(@PathVariable String id1, @PathVariable String id2)
+    {
+        try
+        {
+            int count = userService.getMutualFriendCount(id1, id2);
+            return ResponseEntity.ok().cacheControl(MUTUAL_FRIENDS_CACHE).body(count);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+        }
+    }
+
     /**
      * Add a friend relationship
      */
@@ -0,0 +1,8 @@
+package edu.sabanciuniv.howudoin.users;
+
+/**
+ * Published synchronously by UserService after a user was deleted, so modules that
+ * UserService cannot depend on (groups) can drop their state for the user in the same call.
+ */
+public record UserDeletedEvent(String userId) {
+}
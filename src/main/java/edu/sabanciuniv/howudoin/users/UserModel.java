@@ -3,6 +3,7 @@ package edu.sabanciuniv.howudoin.users;
 import lombok.Data;
 import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
@@ -15,6 +16,8 @@ import java.util.List;
  * to maintain data consistency and prevent race conditions.
  */
 @Document(collection = "users")
+// Lets background deletion find the users still pointing at a deleted account
+@CompoundIndex(name = "friend_connections_friend_id", def = "{ 'friend_connections.friendId': 1 }")
 @Data
 public class UserModel {
     @Id
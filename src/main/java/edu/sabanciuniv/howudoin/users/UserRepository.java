@@ -3,6 +3,7 @@ package edu.sabanciuniv.howudoin.users;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,18 +27,6 @@ public interface UserRepository extends MongoRepository<UserModel, String>
      */
     List<UserModel> findByEmailVerifiedTrue();
 
-    /**
-     * Find all users with a specific first name.
-     * Useful for friend requests
-     */
-    List<UserModel> findByFirstName(String firstName);
-
-    /**
-     * Find all users whose last name contains a specific substring (case-insensitive).
-     * Useful for friend requests
-     */
-    List<UserModel> findByLastNameContainingIgnoreCase(String lastName);
-
     // Friend-related queries
 
     /**
@@ -46,6 +35,13 @@ public interface UserRepository extends MongoRepository<UserModel, String>
      */
     List<UserModel> findByIdIn(List<String> userIds);
 
+    /**
+     * Find multiple users by their IDs, loading only the public name fields.
+     * Used to list group members without passwords or friend lists
+     */
+    @Query(value = "{ '_id': { $in: ?0 } }", fields = "{ 'firstName': 1, 'lastName': 1 }")
+    List<UserModel> findProfilesByIdIn(Collection<String> userIds);
+
     /**
      * Find all users who are friends with the given userId.
      * Used to retrieve a user's friend list
@@ -60,12 +56,6 @@ public interface UserRepository extends MongoRepository<UserModel, String>
     @Query("{ 'friend_ids': { $ne: ?0 } }")
     List<UserModel> findByFriendIdsNotContaining(String userId);
 
-    /**
-     * Find mutual friends between two users.
-     */
-    @Query("{ 'friend_ids': { $all: [?0, ?1] } }")
-    List<UserModel> findMutualFriends(String userId1, String userId2);
-
     /**
      * Count the number of friends for a user.
      */
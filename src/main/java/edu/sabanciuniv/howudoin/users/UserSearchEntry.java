@@ -0,0 +1,33 @@
+package edu.sabanciuniv.howudoin.users;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.List;
+
+/**
+ * Search posting entry for one user: the public profile fields plus the
+ * normalized prefix and trigram keys they produce. The multikey index on
+ * keys is the posting-list store; the id is the user id.
+ */
+@Document(collection = "user_search")
+@Data
+@NoArgsConstructor
+public class UserSearchEntry {
+    @Id
+    private String id;
+
+    private String firstName;
+    private String lastName;
+    private String email;
+
+    @JsonIgnore
+    @Indexed
+    @Field("keys")
+    private List<String> keys;
+}
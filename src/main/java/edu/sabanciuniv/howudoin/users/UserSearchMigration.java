@@ -0,0 +1,67 @@
+package edu.sabanciuniv.howudoin.users;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.stream.Stream;
+
+/**
+ * Builds the user_search index for users that registered before it existed.
+ * Does nothing once every user has an entry.
+ */
+@Slf4j
+@Component
+@Order(4)
+@RequiredArgsConstructor
+public class UserSearchMigration implements ApplicationRunner {
+    private static final int BATCH_SIZE = 500;
+
+    private final MongoTemplate mongoTemplate;
+    private final UserSearchService userSearchService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (mongoTemplate.count(new Query(), UserSearchEntry.class) >= mongoTemplate.count(new Query(), UserModel.class)) {
+            return;
+        }
+
+        Query users = new Query();
+        users.fields().include("firstName").include("lastName").include("email");
+
+        long indexed = 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserSearchEntry.class);
+        int pending = 0;
+        try (Stream<UserModel> stream = mongoTemplate.stream(users, UserModel.class)) {
+            for (UserModel user : (Iterable<UserModel>) stream::iterator) {
+                bulk.insert(userSearchService.toEntry(user));
+                pending++;
+                if (pending == BATCH_SIZE) {
+                    indexed += execute(bulk);
+                    bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserSearchEntry.class);
+                    pending = 0;
+                }
+            }
+        }
+        if (pending > 0) {
+            indexed += execute(bulk);
+        }
+        log.info("Indexed {} users for search", indexed);
+    }
+
+    // Users that already have an entry fail with duplicate keys, which is expected here
+    private long execute(BulkOperations bulk) {
+        try {
+            return bulk.execute().getInsertedCount();
+        } catch (BulkOperationException exception) {
+            return exception.getResult().getInsertedCount();
+        }
+    }
+}
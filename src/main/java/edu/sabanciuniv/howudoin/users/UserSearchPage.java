@@ -0,0 +1,17 @@
+package edu.sabanciuniv.howudoin.users;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class UserSearchPage
+{
+    // Best match first
+    private List<UserSearchEntry> users;
+
+    // Whether the next page has results
+    private boolean hasMore;
+}
@@ -0,0 +1,240 @@
+package edu.sabanciuniv.howudoin.users;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * People search over first name, last name and email.
+ * Every token is case-folded and stripped of diacritics, then indexed as
+ * edge prefixes (for type-ahead) and trigrams (for matches inside a name).
+ * A query becomes an $all over those keys on the multikey index. Candidates are
+ * read in tiers, users whose tokens start with every term before users that only
+ * contain the terms, and at most MAX_CANDIDATES of them are scored per search,
+ * so a one-letter query costs the same as a full name. A bounded heap keeps the
+ * best ones up to the requested page.
+ */
+@Service
+public class UserSearchService {
+    private static final String PREFIX_MARK = "^";
+    private static final int MAX_PREFIX_LENGTH = 20;
+    private static final int GRAM_LENGTH = 3;
+    private static final int MAX_PAGE_SIZE = 50;
+    // Deepest result reachable by paging, which bounds the ranking heap
+    private static final int MAX_RESULT_WINDOW = 1000;
+    // Entries scored per search, over all tiers
+    private static final int MAX_CANDIDATES = 2000;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final MongoTemplate mongoTemplate;
+
+    private record ScoredEntry(UserSearchEntry entry, int score, String sortName) {
+    }
+
+    private static final Comparator<ScoredEntry> BEST_FIRST = Comparator.comparingInt(ScoredEntry::score).reversed()
+            .thenComparing(ScoredEntry::sortName)
+            .thenComparing(scored -> scored.entry().getId());
+
+    @Autowired
+    public UserSearchService(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Creates or refreshes the search entry of a user.
+     */
+    public void index(UserModel user) {
+        mongoTemplate.save(toEntry(user));
+    }
+
+    /**
+     * Removes a user from the search index.
+     */
+    public void remove(String userId) {
+        mongoTemplate.remove(new Query(Criteria.where("id").is(userId)), UserSearchEntry.class);
+    }
+
+    /**
+     * Finds users matching every term of the query, best matches first.
+     */
+    public UserSearchPage search(String query, int page, int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        long offset = (long) Math.max(page, 0) * pageSize;
+        if (offset + pageSize > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("Search results are limited to the first " + MAX_RESULT_WINDOW + " matches");
+        }
+
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return new UserSearchPage(List.of(), false);
+        }
+
+        Set<String> prefixKeys = new LinkedHashSet<>();
+        Set<String> infixKeys = new LinkedHashSet<>();
+        for (String term : terms) {
+            prefixKeys.add(PREFIX_MARK + term.substring(0, Math.min(term.length(), MAX_PREFIX_LENGTH)));
+            infixKeys.addAll(queryKeys(term));
+        }
+
+        // Worst retained entry on top; one extra slot tells whether another page exists
+        int retained = (int) offset + pageSize + 1;
+        PriorityQueue<ScoredEntry> best = new PriorityQueue<>(retained, BEST_FIRST.reversed());
+        Set<String> scored = new HashSet<>();
+
+        // Prefix matches outrank infix ones, so the infix tier is only read when they do not fill the window
+        scoreCandidates(prefixKeys, terms, best, retained, scored);
+        if (best.size() < retained && !infixKeys.equals(prefixKeys) && scored.size() < MAX_CANDIDATES) {
+            scoreCandidates(infixKeys, terms, best, retained, scored);
+        }
+
+        List<ScoredEntry> ranked = new ArrayList<>(best);
+        ranked.sort(BEST_FIRST);
+        List<UserSearchEntry> users = ranked.stream()
+                .skip(offset)
+                .limit(pageSize)
+                .map(ScoredEntry::entry)
+                .toList();
+        return new UserSearchPage(users, ranked.size() > offset + pageSize);
+    }
+
+    // Scores up to the remaining candidate budget of entries holding every key
+    private void scoreCandidates(Set<String> keys, List<String> terms, PriorityQueue<ScoredEntry> best,
+                                 int retained, Set<String> scored) {
+        Query candidatesQuery = new Query(Criteria.where("keys").all(keys).and("id").nin(scored))
+                .limit(MAX_CANDIDATES - scored.size());
+        candidatesQuery.fields().exclude("keys");
+
+        try (Stream<UserSearchEntry> candidates = mongoTemplate.stream(candidatesQuery, UserSearchEntry.class)) {
+            candidates.forEach(entry -> {
+                scored.add(entry.getId());
+                int score = score(entry, terms);
+                // Every trigram present does not mean any term actually occurs in a field
+                if (score == 0) {
+                    return;
+                }
+                best.offer(new ScoredEntry(entry, score, normalize(entry.getLastName() + " " + entry.getFirstName())));
+                if (best.size() > retained) {
+                    best.poll();
+                }
+            });
+        }
+    }
+
+    UserSearchEntry toEntry(UserModel user) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (String token : profileTokens(user.getFirstName(), user.getLastName(), user.getEmail())) {
+            for (int length = 1; length <= Math.min(token.length(), MAX_PREFIX_LENGTH); length++) {
+                keys.add(PREFIX_MARK + token.substring(0, length));
+            }
+            for (int start = 0; start + GRAM_LENGTH <= token.length(); start++) {
+                keys.add(token.substring(start, start + GRAM_LENGTH));
+            }
+        }
+
+        UserSearchEntry entry = new UserSearchEntry();
+        entry.setId(user.getId());
+        entry.setFirstName(user.getFirstName());
+        entry.setLastName(user.getLastName());
+        entry.setEmail(user.getEmail());
+        entry.setKeys(new ArrayList<>(keys));
+        return entry;
+    }
+
+    // Short terms can only be looked up as prefixes; longer ones match anywhere through their trigrams
+    private List<String> queryKeys(String term) {
+        if (term.length() < GRAM_LENGTH) {
+            return List.of(PREFIX_MARK + term);
+        }
+        List<String> grams = new ArrayList<>();
+        for (int start = 0; start + GRAM_LENGTH <= term.length(); start++) {
+            grams.add(term.substring(start, start + GRAM_LENGTH));
+        }
+        return grams;
+    }
+
+    // Exact token beats prefix beats infix; name matches weigh double an email match
+    private int score(UserSearchEntry entry, List<String> terms) {
+        List<String> nameTokens = new ArrayList<>(tokenize(entry.getFirstName()));
+        nameTokens.addAll(tokenize(entry.getLastName()));
+        List<String> emailTokens = tokenize(emailLocalPart(entry.getEmail()));
+        int score = 0;
+        for (String term : terms) {
+            score += Math.max(2 * bestMatch(nameTokens, term), bestMatch(emailTokens, term));
+        }
+        return score;
+    }
+
+    private int bestMatch(List<String> tokens, String term) {
+        int best = 0;
+        for (String token : tokens) {
+            if (token.equals(term)) {
+                return 10;
+            }
+            if (token.startsWith(term)) {
+                best = Math.max(best, 5);
+            } else if (token.contains(term)) {
+                best = Math.max(best, 1);
+            }
+        }
+        return best;
+    }
+
+    private List<String> profileTokens(String firstName, String lastName, String email) {
+        Set<String> tokens = new LinkedHashSet<>();
+        tokens.addAll(tokenize(firstName));
+        tokens.addAll(tokenize(lastName));
+        String localPart = emailLocalPart(email);
+        tokens.addAll(tokenize(localPart));
+        // Also index the local part without separators, so "johnsmith" finds john.smith@...
+        String compact = SEPARATORS.matcher(normalize(localPart)).replaceAll("");
+        if (!compact.isEmpty()) {
+            tokens.add(compact);
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private static String emailLocalPart(String email) {
+        if (email == null) {
+            return "";
+        }
+        int at = email.indexOf('@');
+        return at < 0 ? email : email.substring(0, at);
+    }
+
+    static List<String> tokenize(String text) {
+        String normalized = normalize(text);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(normalized)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("")
+                .toLowerCase(Locale.ROOT)
+                .replace('ı', 'i');
+    }
+}
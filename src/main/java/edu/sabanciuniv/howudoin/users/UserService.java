@@ -1,9 +1,24 @@
 package edu.sabanciuniv.howudoin.users;
 
+import edu.sabanciuniv.howudoin.deletion.DeletionJobModel;
+import edu.sabanciuniv.howudoin.deletion.DeletionService;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
-import java.util.ArrayList;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Service class handling user-related business logic including friend connections.
@@ -12,10 +27,32 @@ import java.util.List;
 @Service
 public class UserService {
     private final UserRepository userRepository;
+    private final FriendGraphIndex friendGraphIndex;
+    private final FriendSuggestionEngine friendSuggestionEngine;
+    private final UserSearchService userSearchService;
+    private final UserStatusCache userStatusCache;
+    private final DeletionService deletionService;
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(
+            UserRepository userRepository,
+            FriendGraphIndex friendGraphIndex,
+            FriendSuggestionEngine friendSuggestionEngine,
+            UserSearchService userSearchService,
+            UserStatusCache userStatusCache,
+            DeletionService deletionService,
+            MongoTemplate mongoTemplate,
+            ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
+        this.friendGraphIndex = friendGraphIndex;
+        this.friendSuggestionEngine = friendSuggestionEngine;
+        this.userSearchService = userSearchService;
+        this.userStatusCache = userStatusCache;
+        this.deletionService = deletionService;
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -27,7 +64,10 @@ public class UserService {
             throw new IllegalArgumentException("A user with this email already exists.");
         }
         // FriendConnections list is initialized in UserModel constructor
-        return userRepository.save(userModel);
+        UserModel savedUser = userRepository.save(userModel);
+        friendGraphIndex.addUser(savedUser.getId());
+        userSearchService.index(savedUser);
+        return savedUser;
     }
 
     /**
@@ -68,25 +108,29 @@ public class UserService {
         existingUser.setPassword(updatedUser.getPassword());
         existingUser.setEmailVerified(updatedUser.isEmailVerified());
 
-        return userRepository.save(existingUser);
+        UserModel savedUser = userRepository.save(existingUser);
+        userSearchService.index(savedUser);
+        return savedUser;
     }
 
     /**
-     * Deletes a user and removes all their friend connections.
+     * Deletes a user and removes all their friend connections and group memberships.
      */
     public void deleteUser(String id) {
         if (!userRepository.existsById(id)) {
             throw new IllegalArgumentException("User not found with ID: " + id);
         }
 
-        // Remove user from all friend connections before deletion
-        UserModel user = getUserById(id);
-        if (!user.getFriendConnections().isEmpty()) {
-            for (UserModel.FriendConnection friendConnection : user.getFriendConnections()) {
-                removeFriendship(id, friendConnection.getFriendId());
-            }
-        }
+        // Friends stop seeing the user at once through the in-memory graph;
+        // the entries left in their friend_connections are pulled in the background
         userRepository.deleteById(id);
+        friendGraphIndex.removeUser(id);
+        friendSuggestionEngine.userRemoved(id);
+        userSearchService.remove(id);
+        userStatusCache.evict(id);
+        deletionService.enqueue(DeletionJobModel.Type.USER, id);
+        // Group memberships and owned groups are handled by GroupService, inboxes and badges by MessageService
+        eventPublisher.publishEvent(new UserDeletedEvent(id));
     }
 
     /**
@@ -104,98 +148,175 @@ public class UserService {
     }
 
     /**
-     * Searches for users by first name.
+     * Name-only profiles of the given users in one query. Unknown IDs are skipped.
      */
-    public List<UserModel> searchByFirstName(String firstName) {
-        return userRepository.findByFirstName(firstName);
+    public List<UserModel> getProfiles(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return userRepository.findProfilesByIdIn(ids);
     }
 
     /**
-     * Searches for users by last name (case-insensitive).
+     * Whether a user with this ID exists, answered from the in-memory friend graph.
      */
-    public List<UserModel> searchByLastName(String lastName) {
-        return userRepository.findByLastNameContainingIgnoreCase(lastName);
+    public boolean userExists(String id) {
+        return friendGraphIndex.contains(id);
+    }
+
+    /**
+     * Searches users by first name, last name or email, ranked and paginated.
+     */
+    public UserSearchPage searchUsers(String query, int page, int size) {
+        return userSearchService.search(query, page, size);
     }
 
     /**
      * Gets all accepted friends of a user.
      */
     public List<UserModel> getUserFriends(String userId) {
-        UserModel user = getUserById(userId);
-        List<String> acceptedFriendIds = user.getFriendConnections().stream()
-                .filter(conn -> conn.getStatus() == UserModel.FriendStatus.ACCEPTED)
-                .map(UserModel.FriendConnection::getFriendId)
-                .toList();
-
-        return userRepository.findByIdIn(acceptedFriendIds);
+        requireIndexedUser(userId);
+        return userRepository.findByIdIn(friendGraphIndex.acceptedFriendIds(userId));
     }
 
     /**
      * Creates a bi-directional friendship between two users.
+     * Both edges are written in one unordered bulk write of targeted updates,
+     * so concurrent friendship changes on the same user never overwrite each other.
      */
     public void addFriendship(String userId1, String userId2) {
         if (userId1.equals(userId2)) {
             throw new IllegalArgumentException("A user cannot be friends with themselves");
         }
+        requireIndexedUser(userId1);
+        requireIndexedUser(userId2);
 
-        UserModel user1 = getUserById(userId1);
-        UserModel user2 = getUserById(userId2);
-
-        // Add friendship connection for both users
-        if (!user1.hasFriendConnection(userId2)) {
-            user1.addFriendConnection(userId2);
-            user1.updateFriendStatus(userId2, UserModel.FriendStatus.ACCEPTED);
-            userRepository.save(user1);
-        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserModel.class);
+        acceptEdge(bulk, userId1, userId2, now);
+        acceptEdge(bulk, userId2, userId1, now);
+        bulk.execute();
 
-        if (!user2.hasFriendConnection(userId1)) {
-            user2.addFriendConnection(userId1);
-            user2.updateFriendStatus(userId1, UserModel.FriendStatus.ACCEPTED);
-            userRepository.save(user2);
-        }
+        friendGraphIndex.setStatus(userId1, userId2, UserModel.FriendStatus.ACCEPTED);
+        friendGraphIndex.setStatus(userId2, userId1, UserModel.FriendStatus.ACCEPTED);
+        friendSuggestionEngine.friendshipChanged(userId1, userId2);
     }
 
     /**
      * Removes a friendship connection between two users.
      */
     public void removeFriendship(String userId1, String userId2) {
-        UserModel user1 = getUserById(userId1);
-        UserModel user2 = getUserById(userId2);
+        requireIndexedUser(userId1);
+        requireIndexedUser(userId2);
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UserModel.class);
+        bulk.updateOne(new Query(Criteria.where("id").is(userId1)),
+                new Update().pull("friendConnections", new Document("friendId", userId2)));
+        bulk.updateOne(new Query(Criteria.where("id").is(userId2)),
+                new Update().pull("friendConnections", new Document("friendId", userId1)));
+        bulk.execute();
 
-        // Remove both users' friend connections
-        user1.getFriendConnections().removeIf(conn -> conn.getFriendId().equals(userId2));
-        user2.getFriendConnections().removeIf(conn -> conn.getFriendId().equals(userId1));
+        friendGraphIndex.removeConnection(userId1, userId2);
+        friendGraphIndex.removeConnection(userId2, userId1);
+        friendSuggestionEngine.friendshipChanged(userId1, userId2);
+    }
+
+    /**
+     * Queues the updates that leave userId with an ACCEPTED connection to friendId:
+     * a $push guarded by $ne when there is none, a positional $set when there is one
+     * with another status. At most one of the two matches.
+     */
+    private void acceptEdge(BulkOperations bulk, String userId, String friendId, LocalDateTime now) {
+        UserModel.FriendConnection connection = new UserModel.FriendConnection(friendId);
+        connection.setStatus(UserModel.FriendStatus.ACCEPTED);
+        connection.setCreatedAt(now);
+        connection.setUpdatedAt(now);
+        bulk.updateOne(
+                new Query(Criteria.where("id").is(userId).and("friendConnections.friendId").ne(friendId)),
+                new Update().push("friendConnections", connection));
 
-        userRepository.save(user1);
-        userRepository.save(user2);
+        bulk.updateOne(
+                new Query(Criteria.where("id").is(userId).and("friendConnections").elemMatch(
+                        Criteria.where("friendId").is(friendId).and("status").ne(UserModel.FriendStatus.ACCEPTED))),
+                new Update()
+                        .set("friendConnections.$.status", UserModel.FriendStatus.ACCEPTED)
+                        .set("friendConnections.$.updatedAt", now));
     }
 
     /**
      * Checks if two users are accepted friends.
+     * Answered from the in-memory friend graph without reading either user document.
      */
     public boolean areFriends(String userId1, String userId2) {
-        UserModel user = getUserById(userId1);
-        return user.getFriendConnections().stream()
-                .anyMatch(conn ->
-                        conn.getFriendId().equals(userId2) &&
-                                conn.getStatus() == UserModel.FriendStatus.ACCEPTED);
+        requireIndexedUser(userId1);
+        return friendGraphIndex.areFriends(userId1, userId2);
+    }
+
+    /**
+     * Gets the status of userId's connection to friendId, or null when there is none.
+     */
+    public UserModel.FriendStatus getFriendStatus(String userId, String friendId) {
+        requireIndexedUser(userId);
+        return friendGraphIndex.getStatus(userId, friendId);
+    }
+
+    /**
+     * Counts the accepted friends of a user.
+     */
+    public int getFriendCount(String userId) {
+        requireIndexedUser(userId);
+        return friendGraphIndex.friendCount(userId);
+    }
+
+    /**
+     * Gets the accepted friends two users have in common.
+     */
+    public List<UserModel> getMutualFriends(String userId1, String userId2) {
+        requireIndexedUser(userId1);
+        requireIndexedUser(userId2);
+        return userRepository.findByIdIn(friendGraphIndex.mutualFriendIds(userId1, userId2)).stream()
+                .map(this::sanitizeUserData)
+                .toList();
+    }
+
+    /**
+     * Counts the accepted friends two users have in common.
+     */
+    public int getMutualFriendCount(String userId1, String userId2) {
+        requireIndexedUser(userId1);
+        requireIndexedUser(userId2);
+        return friendGraphIndex.mutualFriendCount(userId1, userId2);
+    }
+
+    /**
+     * Throws the same error as getUserById for users unknown to the friend graph.
+     */
+    private void requireIndexedUser(String userId) {
+        if (!friendGraphIndex.contains(userId)) {
+            throw new IllegalArgumentException("User not found with ID: " + userId);
+        }
     }
 
     /**
      * Gets friend suggestions for a user.
-     * Returns verified users who are not currently connected.
+     * Returns verified friends-of-friends ranked by mutual friend count, from the precomputed lists.
      */
     public List<UserModel> getFriendSuggestions(String userId) {
-        UserModel user = getUserById(userId);
-        List<String> connectedIds = user.getFriendConnections().stream()
-                .map(UserModel.FriendConnection::getFriendId)
+        requireIndexedUser(userId);
+        List<String> candidateIds = Arrays.stream(friendSuggestionEngine.getSuggestions(userId).userIds())
+                .filter(candidateId -> candidateId != null
+                        && friendGraphIndex.contains(candidateId)
+                        && friendGraphIndex.getStatus(userId, candidateId) == null)
                 .toList();
 
-        List<UserModel> suggestions = getVerifiedUsers();
-        suggestions.removeIf(u ->
-                u.getId().equals(userId) || connectedIds.contains(u.getId()));
+        Map<String, UserModel> usersById = userRepository.findByIdIn(candidateIds).stream()
+                .collect(Collectors.toMap(UserModel::getId, Function.identity()));
 
-        return suggestions;
+        return candidateIds.stream()
+                .map(usersById::get)
+                .filter(user -> user != null && user.isEmailVerified())
+                .map(this::sanitizeUserData)
+                .toList();
     }
 
     /**
@@ -0,0 +1,49 @@
+package edu.sabanciuniv.howudoin.users;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Short-lived answers to "does this account still exist".
+ * Lets the authentication filter reject tokens of deleted users without
+ * reading the user document on every request. Deletions on this instance
+ * evict immediately; elsewhere they are seen once the entry expires.
+ */
+@Component
+public class UserStatusCache {
+    private final MongoTemplate mongoTemplate;
+    private final Cache<String, Boolean> active;
+
+    public UserStatusCache(
+            MongoTemplate mongoTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.user-status-cache.max-size:100000}") long maxSize,
+            @Value("${app.user-status-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.active = CaffeineCacheMetrics.monitor(meterRegistry,
+                Caffeine.newBuilder()
+                        .maximumSize(maxSize)
+                        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                        .recordStats()
+                        .<String, Boolean>build(),
+                "user.status");
+    }
+
+    public boolean isActive(String userId) {
+        return active.get(userId, id -> mongoTemplate.exists(
+                new Query(Criteria.where("_id").is(id)), UserModel.class));
+    }
+
+    public void evict(String userId) {
+        active.invalidate(userId);
+    }
+}
@@ -0,0 +1,160 @@
+package edu.sabanciuniv.howudoin.users;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Many friendship changes on the same user at once. With whole-document saves
+ * the last writer dropped the other edges; the targeted updates must keep every one.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class FriendshipConcurrencyTests {
+    private static final int FRIENDS = 64;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserSearchService userSearchService;
+
+    @Autowired
+    private FriendGraphIndex friendGraphIndex;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final List<String> createdIds = new ArrayList<>();
+    private String hubId;
+    private List<String> friendIds;
+
+    @BeforeEach
+    void createUsers() {
+        hubId = createUser("hub");
+        friendIds = new ArrayList<>();
+        for (int i = 0; i < FRIENDS; i++) {
+            friendIds.add(createUser("friend" + i));
+        }
+    }
+
+    // Removed directly rather than through deleteUser, which would leave background deletion jobs behind
+    @AfterEach
+    void deleteUsers() {
+        mongoTemplate.remove(new Query(Criteria.where("id").in(createdIds)), UserModel.class);
+        createdIds.forEach(id -> {
+            userSearchService.remove(id);
+            friendGraphIndex.removeUser(id);
+        });
+        createdIds.clear();
+    }
+
+    @Test
+    void concurrentAcceptsKeepEveryEdge() throws Exception {
+        // Every friendship is added twice, from both sides, to exercise the $ne guard as well
+        List<Runnable> tasks = new ArrayList<>();
+        for (String friendId : friendIds) {
+            tasks.add(() -> userService.addFriendship(hubId, friendId));
+            tasks.add(() -> userService.addFriendship(friendId, hubId));
+        }
+        runConcurrently(tasks);
+
+        UserModel hub = userRepository.findById(hubId).orElseThrow();
+        Map<String, UserModel.FriendConnection> hubEdges = edgesById(hub);
+        assertEquals(FRIENDS, hub.getFriendConnections().size(), "duplicate or lost edges on the hub");
+        for (String friendId : friendIds) {
+            assertEquals(UserModel.FriendStatus.ACCEPTED, hubEdges.get(friendId).getStatus());
+
+            UserModel friend = userRepository.findById(friendId).orElseThrow();
+            assertEquals(1, friend.getFriendConnections().size());
+            assertEquals(UserModel.FriendStatus.ACCEPTED, friend.getFriendStatus(hubId));
+            assertTrue(userService.areFriends(hubId, friendId));
+        }
+    }
+
+    @Test
+    void concurrentAddsAndRemovesOnlyTouchTheirOwnEdge() throws Exception {
+        List<String> removed = friendIds.subList(0, FRIENDS / 2);
+        List<String> kept = friendIds.subList(FRIENDS / 2, FRIENDS);
+        removed.forEach(friendId -> userService.addFriendship(hubId, friendId));
+
+        List<Runnable> tasks = new ArrayList<>();
+        removed.forEach(friendId -> tasks.add(() -> userService.removeFriendship(hubId, friendId)));
+        kept.forEach(friendId -> tasks.add(() -> userService.addFriendship(hubId, friendId)));
+        runConcurrently(tasks);
+
+        UserModel hub = userRepository.findById(hubId).orElseThrow();
+        Map<String, UserModel.FriendConnection> hubEdges = edgesById(hub);
+        assertEquals(kept.size(), hubEdges.size());
+        for (String friendId : kept) {
+            assertTrue(hubEdges.containsKey(friendId));
+            assertTrue(userService.areFriends(friendId, hubId));
+        }
+        for (String friendId : removed) {
+            assertFalse(hubEdges.containsKey(friendId));
+            assertTrue(userRepository.findById(friendId).orElseThrow().getFriendConnections().isEmpty());
+            assertFalse(userService.areFriends(friendId, hubId));
+        }
+    }
+
+    private void runConcurrently(List<Runnable> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String createUser(String name) {
+        UserModel user = new UserModel();
+        user.setEmail(name + "-" + UUID.randomUUID() + "@stress.test");
+        user.setFirstName(name);
+        user.setLastName("Stress");
+        String id = userService.createUser(user).getId();
+        createdIds.add(id);
+        return id;
+    }
+
+    private static Map<String, UserModel.FriendConnection> edgesById(UserModel user) {
+        return user.getFriendConnections().stream()
+                .collect(Collectors.toMap(UserModel.FriendConnection::getFriendId, Function.identity()));
+    }
+}